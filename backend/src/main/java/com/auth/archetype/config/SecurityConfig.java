@@ -2,18 +2,19 @@ package com.auth.archetype.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.auth.archetype.security.JwtAuthenticationFilter;
+import com.auth.archetype.security.LoginRateLimitFilter;
+import com.auth.archetype.security.PasswordHashCalibrator;
+import com.auth.archetype.security.PasswordHashingExecutor;
+import com.auth.archetype.security.PooledPasswordEncoder;
 
 import lombok.RequiredArgsConstructor;
 
@@ -24,15 +25,13 @@ import lombok.RequiredArgsConstructor;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final LoginRateLimitFilter loginRateLimitFilter;
     
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-    
-    @Bean
-    public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
-        return authenticationConfiguration.getAuthenticationManager();
+    public PasswordEncoder passwordEncoder(PasswordHashCalibrator passwordHashCalibrator,
+            PasswordHashingExecutor passwordHashingExecutor) {
+        // Hashing runs on its own bounded pool rather than on request threads
+        return new PooledPasswordEncoder(passwordHashCalibrator.getEncoder(), passwordHashingExecutor);
     }
     
     @Bean
@@ -47,11 +46,15 @@ public class SecurityConfig {
                                 "/auth/biometric/verify", "/auth/biometric/enroll").permitAll()
                 // Health check endpoint
                 .requestMatchers("/health/**").permitAll()
+                // Token verification keys
+                .requestMatchers("/.well-known/jwks.json").permitAll()
                 // Swagger and API docs
                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                 // Private endpoints
                 .anyRequest().authenticated()
             )
+            // Rate limits first, so rejected logins never touch the user store
+            .addFilterBefore(loginRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
             .build();
     }
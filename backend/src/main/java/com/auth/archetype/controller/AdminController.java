@@ -0,0 +1,111 @@
+package com.auth.archetype.controller;
+
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.auth.archetype.security.CredentialStuffingDetector;
+import com.auth.archetype.security.FailedLoginTracker;
+import com.auth.archetype.security.LoginEventQueue;
+import com.auth.archetype.security.LoginPipeline;
+import com.auth.archetype.security.LoginRateLimitFilter;
+import com.auth.archetype.security.PasswordHashCalibrator;
+import com.auth.archetype.security.PasswordHashingExecutor;
+import com.auth.archetype.security.TokenRevocationStore;
+import com.auth.archetype.security.VerifiedTokenCache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/admin")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final VerifiedTokenCache tokenCache;
+    private final TokenRevocationStore tokenRevocations;
+    private final PasswordHashingExecutor passwordHashing;
+    private final PasswordHashCalibrator passwordHashCalibrator;
+    private final LoginRateLimitFilter loginRateLimits;
+    private final CredentialStuffingDetector stuffingDetector;
+    private final FailedLoginTracker failedLogins;
+    private final LoginPipeline loginPipeline;
+    private final LoginEventQueue loginEvents;
+    
+    @GetMapping("/token-cache")
+    public ResponseEntity<Map<String, Object>> getTokenCacheStats() {
+        log.info("Request to get token cache statistics");
+        return ResponseEntity.ok(tokenCache.getStats());
+    }
+    
+    @GetMapping("/token-revocations")
+    public ResponseEntity<Map<String, Integer>> getTokenRevocationStats() {
+        log.info("Request to get token revocation statistics");
+        return ResponseEntity.ok(tokenRevocations.getStats());
+    }
+    
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        log.info("Request to get password hashing pool statistics");
+        return ResponseEntity.ok(passwordHashing.getStats());
+    }
+    
+    @GetMapping("/password-hashing/calibration")
+    public ResponseEntity<Map<String, Object>> getPasswordHashCalibration() {
+        log.info("Request to get password hashing calibration");
+        return ResponseEntity.ok(passwordHashCalibrator.getStats());
+    }
+    
+    @GetMapping("/login-rate-limits")
+    public ResponseEntity<Map<String, Object>> getLoginRateLimitStats() {
+        log.info("Request to get login rate limit statistics");
+        return ResponseEntity.ok(loginRateLimits.getStats());
+    }
+    
+    @GetMapping("/login-failures")
+    public ResponseEntity<Map<String, Object>> getLoginFailureStats() {
+        log.info("Request to get failed login statistics");
+        return ResponseEntity.ok(failedLogins.getStats());
+    }
+    
+    @GetMapping("/login-pipeline")
+    public ResponseEntity<Map<String, Object>> getLoginPipelineTimings() {
+        log.info("Request to get login pipeline timings");
+        return ResponseEntity.ok(loginPipeline.getStats());
+    }
+    
+    @DeleteMapping("/login-pipeline")
+    public ResponseEntity<Void> resetLoginPipelineTimings() {
+        log.info("Request to reset login pipeline timings");
+        loginPipeline.resetStats();
+        return ResponseEntity.noContent().build();
+    }
+    
+    @GetMapping("/login-events")
+    public ResponseEntity<Map<String, Object>> getLoginEventStats() {
+        log.info("Request to get login event queue statistics");
+        return ResponseEntity.ok(loginEvents.getStats());
+    }
+    
+    @GetMapping("/credential-stuffing")
+    public ResponseEntity<Map<String, Object>> getCredentialStuffingReport() {
+        log.info("Request to get credential stuffing report");
+        return ResponseEntity.ok(stuffingDetector.getReport());
+    }
+    
+    @DeleteMapping("/credential-stuffing/blocks/{ip}")
+    public ResponseEntity<Void> unblockIp(@PathVariable String ip) {
+        log.info("Request to unblock IP: {}", ip);
+        return stuffingDetector.unblock(ip)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
\ No newline at end of file
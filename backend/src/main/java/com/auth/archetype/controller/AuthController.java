@@ -62,4 +62,11 @@ public class AuthController {
         authService.logout();
         return ResponseEntity.ok().build();
     }
+    
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutAll() {
+        log.info("Logout-all request");
+        authService.logoutAll();
+        return ResponseEntity.ok().build();
+    }
 }
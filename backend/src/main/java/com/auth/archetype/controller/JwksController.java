@@ -0,0 +1,48 @@
+package com.auth.archetype.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.auth.archetype.security.SigningKeyRing;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes the token verification keys so other services can check tokens locally.
+ */
+@RestController
+@RequestMapping("/.well-known")
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final SigningKeyRing keyRing;
+    
+    @GetMapping(value = "/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getJwks(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        SigningKeyRing.Jwks jwks = keyRing.jwks();
+        CacheControl cacheControl = CacheControl.maxAge(keyRing.getJwksMaxAgeSeconds(), TimeUnit.SECONDS).cachePublic();
+        
+        if (jwks.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(jwks.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        return ResponseEntity.ok()
+                .eTag(jwks.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jwks.json());
+    }
+}
@@ -0,0 +1,48 @@
+package com.auth.archetype.controller;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.auth.archetype.dto.IntrospectionRequest;
+import com.auth.archetype.dto.IntrospectionResult;
+import com.auth.archetype.service.TokenIntrospectionService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batch token verification for gateways and other services that cannot verify tokens locally.
+ */
+@RestController
+@RequestMapping("/auth/introspect")
+@PreAuthorize("hasAnyRole('ADMIN', 'GATEWAY')")
+@RequiredArgsConstructor
+@Slf4j
+public class TokenIntrospectionController {
+
+    private final TokenIntrospectionService introspectionService;
+    
+    @PostMapping
+    public ResponseEntity<List<IntrospectionResult>> introspect(@Valid @RequestBody IntrospectionRequest request) {
+        log.debug("Introspection request for {} tokens", request.getTokens().size());
+        return ResponseEntity.ok(introspectionService.introspect(request.getTokens()));
+    }
+    
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void introspectStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("Streaming introspection request");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        introspectionService.introspectStream(request.getInputStream(), response.getOutputStream());
+    }
+}
@@ -0,0 +1,24 @@
+package com.auth.archetype.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntrospectionRequest {
+    
+    // Larger batches should use the streaming endpoint
+    public static final int MAX_BATCH_SIZE = 1000;
+    
+    @NotNull(message = "Tokens cannot be null")
+    @Size(max = MAX_BATCH_SIZE, message = "At most 1000 tokens per request")
+    private List<String> tokens;
+}
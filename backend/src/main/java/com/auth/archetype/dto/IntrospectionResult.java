@@ -0,0 +1,34 @@
+package com.auth.archetype.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Introspection result for one token. Inactive tokens carry no other fields, so they
+ * serialize as just {@code {"active":false}}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionResult {
+    
+    private boolean active;
+    private String sub;
+    private List<String> roles;
+    private Long exp; // Epoch seconds
+    private Boolean refresh; // Only set for refresh tokens, which must not be accepted as access tokens
+    
+    public static IntrospectionResult inactive() {
+        return IntrospectionResult.builder()
+                .active(false)
+                .build();
+    }
+}
@@ -8,6 +8,9 @@ public class AuthException extends RuntimeException {
     
     private static final long serialVersionUID = 1L;
     
+    // Thrown for every failed login, so it is built once and carries no stack trace
+    private static final AuthException INVALID_CREDENTIALS = new AuthException("Invalid username or password", false);
+    
     public AuthException(String message) {
         super(message);
     }
@@ -15,4 +18,15 @@ public class AuthException extends RuntimeException {
     public AuthException(String message, Throwable cause) {
         super(message, cause);
     }
+    
+    private AuthException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+    
+    /**
+     * Shared, stackless exception for a rejected username and password
+     */
+    public static AuthException invalidCredentials() {
+        return INVALID_CREDENTIALS;
+    }
 }
@@ -3,6 +3,7 @@ package com.auth.archetype.exception;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -21,7 +22,9 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(AuthException.class)
     public ResponseEntity<ErrorResponse> handleAuthException(AuthException ex, WebRequest request) {
-        log.error("Authentication error: {}", ex.getMessage());
+        // Failed logins are logged, sampled, where they are detected; one line each here would
+        // flood the log during an attack
+        log.debug("Authentication error: {}", ex.getMessage());
         
         ErrorResponse errorResponse = new ErrorResponse(
                 HttpStatus.UNAUTHORIZED.value(),
@@ -45,9 +48,37 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
     
+    @ExceptionHandler(StaleUserException.class)
+    public ResponseEntity<ErrorResponse> handleStaleUserException(StaleUserException ex, WebRequest request) {
+        log.warn("Conflicting update: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "The resource was modified concurrently, please retry",
+                request.getDescription(false)
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+    
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloadedException(ServiceOverloadedException ex, WebRequest request) {
+        log.warn("Service overloaded: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                ex.getMessage(),
+                request.getDescription(false)
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+    
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ErrorResponse> handleBadCredentialsException(BadCredentialsException ex, WebRequest request) {
-        log.error("Bad credentials: {}", ex.getMessage());
+        log.debug("Bad credentials: {}", ex.getMessage());
         
         ErrorResponse errorResponse = new ErrorResponse(
                 HttpStatus.UNAUTHORIZED.value(),
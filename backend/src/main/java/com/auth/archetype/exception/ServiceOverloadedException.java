@@ -0,0 +1,24 @@
+package com.auth.archetype.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a bounded resource cannot take more work; the client should retry after the given delay
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceOverloadedException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final long retryAfterSeconds;
+    
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
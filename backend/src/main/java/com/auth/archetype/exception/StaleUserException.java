@@ -0,0 +1,18 @@
+package com.auth.archetype.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a conditional save finds that the user was changed since it was read
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StaleUserException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public StaleUserException(String id, long expectedVersion, long actualVersion) {
+        super(String.format("User '%s' was modified concurrently: expected version %d but found %d",
+                id, expectedVersion, actualVersion));
+    }
+}
@@ -8,7 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class BiometricInfo {
@@ -26,8 +26,12 @@ public class BiometricInfo {
     private int usageCount;
     
     public void incrementUsage() {
+        incrementUsage(LocalDateTime.now());
+    }
+    
+    public void incrementUsage(LocalDateTime usedAt) {
         this.usageCount++;
-        this.lastUsedAt = LocalDateTime.now();
+        this.lastUsedAt = usedAt;
     }
     
     // Factory method for creating new biometric info
@@ -40,6 +44,10 @@ public class BiometricInfo {
                 .build();
     }
     
+    public BiometricInfo copy() {
+        return toBuilder().build();
+    }
+    
     // Validate if this biometric info is still valid (e.g., not expired)
     public boolean isValid() {
         // Example: Biometric credentials expire after 1 year
@@ -13,11 +13,16 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
     
+    /**
+     * Consecutive failed logins after which the account is locked
+     */
+    public static final int MAX_FAILED_LOGIN_ATTEMPTS = 5;
+    
     private String id;
     private String username;
     private String firstName;
@@ -46,6 +51,9 @@ public class User {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
+    // Bumped by the repository on every save; 0 means never saved
+    private long version;
+    
     // Helper methods
     public static User createNew(String username, String password, String firstName, String lastName, String email, 
                                 List<String> roles, boolean biometricEnabled) {
@@ -65,20 +73,30 @@ public class User {
     }
     
     public void updateLoginInfo(String loginIp, String loginMethod) {
+        updateLoginInfo(loginIp, loginMethod, LocalDateTime.now());
+    }
+    
+    public void updateLoginInfo(String loginIp, String loginMethod, LocalDateTime loginAt) {
         this.lastLoginIp = loginIp;
-        this.lastLoginAt = LocalDateTime.now();
+        this.lastLoginAt = loginAt;
         this.lastLoginMethod = loginMethod;
         this.failedLoginAttempts = 0;
     }
     
     public void incrementFailedLoginAttempts() {
         this.failedLoginAttempts++;
-        if (this.failedLoginAttempts >= 5) {
+        if (this.failedLoginAttempts >= MAX_FAILED_LOGIN_ATTEMPTS) {
             this.accountLocked = true;
             this.accountLockedAt = LocalDateTime.now();
         }
     }
     
+    public void lockAfterFailedLogins(int attempts) {
+        this.failedLoginAttempts = attempts;
+        this.accountLocked = true;
+        this.accountLockedAt = LocalDateTime.now();
+    }
+    
     public void unlockAccount() {
         this.accountLocked = false;
         this.accountLockedAt = null;
@@ -88,4 +106,12 @@ public class User {
     public boolean hasRole(String role) {
         return roles != null && roles.contains(role);
     }
+    
+    // Deep copy that shares no mutable state with this user
+    public User copy() {
+        return toBuilder()
+                .roles(roles == null ? null : new ArrayList<>(roles))
+                .biometricInfo(biometricInfo == null ? null : biometricInfo.copy())
+                .build();
+    }
 }
@@ -1,128 +1,504 @@
 package com.auth.archetype.repository;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
-import com.auth.archetype.exception.ResourceNotFoundException;
 import com.auth.archetype.model.User;
 import com.auth.archetype.util.FileStorageUtil;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.auth.archetype.util.StripedLocks;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Repository
+@ConditionalOnProperty(name = "app.storage.engine", havingValue = "file", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
-public class FileUserRepository {
-
+public class FileUserRepository implements UserRepository {
+    
     private final FileStorageUtil fileStorageUtil;
+    private final UserJournal journal;
+    private final UserBinaryCodec binaryCodec;
+    private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final ObjectReader userReader = objectMapper.readerFor(User.class);
+    // Flushing after every user would turn the buffered snapshot write into one syscall per user
+    private final ObjectWriter userWriter = objectMapper.writerFor(User.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    
+    // Reads go straight to the index. Writes hold the lock stripe of their user so that a
+    // user's changes are persisted in the same order as they hit the index, while writes to
+    // different users proceed in parallel
+    private final UserIndex index = new UserIndex();
+    private final StripedLocks userLocks = new StripedLocks(64);
+    
+    // Serializes full snapshot rewrites
+    private final Object snapshotLock = new Object();
+    
+    // Users whose latest changes are still waiting for a write-behind flush
+    private final Set<String> dirtyUserIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    // "snapshot" rewrites the users file on every change, "journal" appends to a log instead
+    @Value("${app.storage.mode:snapshot}")
+    private String storageMode;
+    
+    // Format for new snapshots: "json" or "binary"; either format is detected when loading
+    @Value("${app.storage.snapshot-format:json}")
+    private String snapshotFormat;
+    
+    @Value("${app.storage.journal.compact-interval-seconds:300}")
+    private long compactIntervalSeconds;
     
-    private List<User> users = new ArrayList<>();
+    @Value("${app.storage.journal.compact-threshold-bytes:1048576}")
+    private long compactThresholdBytes;
+    
+    // Coalesce updates to existing users and persist them in batches instead of on every save
+    @Value("${app.storage.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+    
+    @Value("${app.storage.write-behind.flush-interval-ms:1000}")
+    private long writeBehindFlushIntervalMs;
+    
+    @Value("${app.storage.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+    
+    // Persist lock/unlock transitions immediately even when write-behind is on
+    @Value("${app.storage.write-behind.sync-lockout:true}")
+    private boolean syncLockout;
+    
+    private ScheduledExecutorService scheduler;
     
     @PostConstruct
     public void init() {
-        loadUsersFromFile();
+        boolean loadedBinary = loadUsersFromFile();
+        
+        if (isJournalMode()) {
+            openJournal();
+            scheduler().scheduleWithFixedDelay(this::compactJournal,
+                    compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+        }
+        
+        if (writeBehindEnabled) {
+            scheduler().scheduleWithFixedDelay(this::flushDirtyUsers,
+                    writeBehindFlushIntervalMs, writeBehindFlushIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("Write-behind enabled: flush every {} ms or {} dirty users",
+                    writeBehindFlushIntervalMs, writeBehindBatchSize);
+        }
+        
+        // Rewriting the snapshot converts it to the configured format
+        if (index.size() > 0 && loadedBinary != isBinaryFormat()) {
+            log.info("Converting users snapshot to {} format", isBinaryFormat() ? "binary" : "json");
+            awaitPersisted(saveUsersToFile());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        // Drain anything still buffered before the journal closes
+        flushDirtyUsers();
     }
     
+    @Override
     public List<User> findAll() {
-        return Collections.unmodifiableList(users);
+        return index.findAll();
     }
     
+    @Override
     public Optional<User> findById(String id) {
-        return users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(index.findById(id));
     }
     
+    @Override
     public Optional<User> findByUsername(String username) {
-        return users.stream()
-                .filter(user -> user.getUsername().equals(username))
-                .findFirst();
+        return Optional.ofNullable(index.findByUsername(username));
     }
     
+    @Override
     public Optional<User> findByEmail(String email) {
-        return users.stream()
-                .filter(user -> user.getEmail().equals(email))
-                .findFirst();
+        return Optional.ofNullable(index.findByEmail(email));
     }
     
+    @Override
     public User save(User user) {
-        // Update timestamp
-        user.setUpdatedAt(LocalDateTime.now());
+        return store(user, UserIndex.ANY_VERSION);
+    }
+    
+    @Override
+    public User saveIfCurrent(User user) {
+        return store(user, user.getVersion());
+    }
+    
+    /**
+     * Applies the change while holding the user's lock stripe, so it runs exactly once and
+     * never has to retry against a concurrent save
+     */
+    @Override
+    public Optional<User> update(String id, Consumer<User> change) {
+        User user;
+        FileStorageUtil.PendingWrite pending;
         
-        // Check if user already exists (update) or is new (create)
-        boolean exists = users.stream().anyMatch(u -> u.getId().equals(user.getId()));
+        Lock lock = userLocks.get(id);
+        lock.lock();
+        try {
+            user = index.findById(id);
+            if (user == null) {
+                return Optional.empty();
+            }
+            change.accept(user);
+            pending = storeLocked(user, user.getVersion());
+        } finally {
+            lock.unlock();
+        }
         
-        if (exists) {
-            // Update existing user
-            users = users.stream()
-                    .map(u -> u.getId().equals(user.getId()) ? user : u)
-                    .collect(Collectors.toList());
-        } else {
-            // Add new user
-            users.add(user);
+        afterStore(user, pending);
+        return Optional.of(user);
+    }
+    
+    @Override
+    public void delete(User user) {
+        FileStorageUtil.PendingWrite pending;
+        
+        Lock lock = userLocks.get(user.getId());
+        lock.lock();
+        try {
+            if (index.remove(user.getId()) == null) {
+                return;
+            }
+            dirtyUserIds.remove(user.getId());
+            
+            // Persist the change
+            if (isJournalMode()) {
+                appendToJournal(UserJournal.OP_DELETE, user);
+                pending = this::syncJournal;
+            } else {
+                pending = saveUsersToFile();
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        awaitPersisted(pending);
+        eventPublisher.publishEvent(new UserChangedEvent(user, true));
+    }
+    
+    // Private helper methods
+    
+    /**
+     * Stream users out of the snapshot one at a time, so loading never holds the raw file
+     * or an intermediate list alongside the indexes. The format is detected from the header.
+     * 
+     * @return true if the snapshot on disk was in the binary format
+     */
+    private boolean loadUsersFromFile() {
+        try (InputStream file = fileStorageUtil.openFile(fileStorageUtil.getUsersFilePath())) {
+            if (file == null) {
+                log.info("Users file is empty or doesn't exist, starting with empty list");
+                return isBinaryFormat();
+            }
+            
+            InputStream in = new BufferedInputStream(file, 64 * 1024);
+            in.mark(UserBinaryCodec.headerLength());
+            byte[] head = in.readNBytes(UserBinaryCodec.headerLength());
+            in.reset();
+            
+            if (UserBinaryCodec.isBinarySnapshot(head)) {
+                binaryCodec.readSnapshot(in, index::put);
+                log.info("Loaded {} users from binary file", index.size());
+                return true;
+            }
+            
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    log.info("Users file is empty or doesn't exist, starting with empty list");
+                    return isBinaryFormat();
+                }
+                if (token != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected a JSON array of users but found " + token);
+                }
+                
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    index.put(userReader.readValue(parser));
+                }
+            }
+            log.info("Loaded {} users from file", index.size());
+        } catch (IOException e) {
+            log.error("Error loading users from file", e);
         }
+        return false;
+    }
+    
+    private User store(User user, long expectedVersion) {
+        FileStorageUtil.PendingWrite pending;
         
-        // Save to file
-        saveUsersToFile();
+        Lock lock = userLocks.get(user.getId());
+        lock.lock();
+        try {
+            pending = storeLocked(user, expectedVersion);
+        } finally {
+            lock.unlock();
+        }
         
+        afterStore(user, pending);
         return user;
     }
     
-    public void delete(User user) {
-        users = users.stream()
-                .filter(u -> !u.getId().equals(user.getId()))
-                .collect(Collectors.toList());
+    /**
+     * Index and persist a user; must be called while holding its lock stripe
+     * 
+     * @return the write to await once the stripe is released
+     */
+    private FileStorageUtil.PendingWrite storeLocked(User user, long expectedVersion) {
+        user.setUpdatedAt(LocalDateTime.now());
+        UserIndex.IndexedState previous = index.putNextVersion(user, expectedVersion);
+        
+        // New users and lockout transitions are persisted right away; other updates
+        // to existing users are coalesced until the next write-behind flush
+        boolean lockStateChanged = previous != null && previous.accountLocked() != user.isAccountLocked();
+        if (writeBehindEnabled && previous != null && !(syncLockout && lockStateChanged)) {
+            dirtyUserIds.add(user.getId());
+            return FileStorageUtil.PendingWrite.DONE;
+        }
         
-        // Save to file
-        saveUsersToFile();
+        return persist(user);
     }
     
-    public void deleteById(String id) {
-        User user = findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
+    // Runs after the lock stripe is released so concurrent writers can share a sync
+    private void afterStore(User user, FileStorageUtil.PendingWrite pending) {
+        awaitPersisted(pending);
+        eventPublisher.publishEvent(new UserChangedEvent(user, false));
         
-        delete(user);
+        if (writeBehindEnabled && dirtyUserIds.size() >= writeBehindBatchSize
+                && flushScheduled.compareAndSet(false, true)) {
+            scheduler().execute(this::flushDirtyUsers);
+        }
     }
     
-    // Private helper methods
+    private boolean isJournalMode() {
+        return "journal".equalsIgnoreCase(storageMode);
+    }
+    
+    private boolean isBinaryFormat() {
+        return "binary".equalsIgnoreCase(snapshotFormat);
+    }
+    
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-store-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+    
+    // Must be called while holding the user's lock stripe; the result is awaited after it
+    private FileStorageUtil.PendingWrite persist(User user) {
+        if (isJournalMode()) {
+            appendToJournal(UserJournal.OP_UPSERT, user);
+            dirtyUserIds.remove(user.getId());
+            return this::syncJournal;
+        }
+        return saveUsersToFile();
+    }
     
-    private void loadUsersFromFile() {
+    private void flushDirtyUsers() {
+        flushScheduled.set(false);
+        
+        if (dirtyUserIds.isEmpty()) {
+            return;
+        }
+        
+        int flushed = dirtyUserIds.size();
+        if (isJournalMode()) {
+            for (String id : List.copyOf(dirtyUserIds)) {
+                // Holding the stripe keeps this record from overtaking a newer synchronous one
+                Lock lock = userLocks.get(id);
+                lock.lock();
+                try {
+                    dirtyUserIds.remove(id);
+                    User user = index.snapshot().get(id);
+                    if (user != null) {
+                        appendToJournal(UserJournal.OP_UPSERT, user);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } else {
+            awaitPersisted(saveUsersToFile());
+        }
+        log.debug("Flushed {} write-behind user updates", flushed);
+        
+        if (isJournalMode()) {
+            syncJournal();
+        }
+    }
+    
+    private void openJournal() {
         try {
-            byte[] data = fileStorageUtil.readFile(fileStorageUtil.getUsersFilePath());
-            
-            if (data != null && data.length > 0) {
-                users = objectMapper.readValue(data, new TypeReference<List<User>>() {});
-                log.info("Loaded {} users from file", users.size());
+            int replayed = journal.replay(this::applyJournalRecord);
+            journal.open();
+            log.info("Replayed {} journal records, {} users in memory", replayed, index.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open user journal", e);
+        }
+    }
+    
+    private void applyJournalRecord(byte op, byte[] payload) throws IOException {
+        if (op == UserJournal.OP_UPSERT) {
+            index.put(objectMapper.readValue(payload, User.class));
+        } else if (op == UserJournal.OP_UPSERT_BINARY) {
+            index.put(binaryCodec.decode(payload, 0, payload.length));
+        } else if (op == UserJournal.OP_DELETE) {
+            index.remove(new String(payload, StandardCharsets.UTF_8));
+        } else {
+            log.warn("Skipping unknown journal record type {}", op);
+        }
+    }
+    
+    private void appendToJournal(byte op, User user) {
+        try {
+            if (op == UserJournal.OP_DELETE) {
+                journal.append(op, user.getId().getBytes(StandardCharsets.UTF_8));
+            } else if (isBinaryFormat()) {
+                journal.append(UserJournal.OP_UPSERT_BINARY, binaryCodec.encode(user));
             } else {
-                log.info("Users file is empty or doesn't exist, starting with empty list");
-                users = new ArrayList<>();
+                journal.append(op, objectMapper.writeValueAsBytes(user));
             }
         } catch (IOException e) {
-            log.error("Error loading users from file", e);
-            users = new ArrayList<>();
+            log.error("Error appending to user journal", e);
         }
     }
     
-    private void saveUsersToFile() {
+    // Runs outside the lock stripes so concurrent writers can share a group-commit fsync
+    private void syncJournal() {
         try {
-            byte[] data = objectMapper.writeValueAsBytes(users);
-            fileStorageUtil.writeFile(fileStorageUtil.getUsersFilePath(), data);
-            log.info("Saved {} users to file", users.size());
+            journal.sync();
+        } catch (IOException e) {
+            log.error("Error syncing user journal", e);
+        }
+    }
+    
+    // Runs outside the lock stripes and the snapshot lock, for the same reason
+    private void awaitPersisted(FileStorageUtil.PendingWrite pending) {
+        try {
+            pending.await();
         } catch (IOException e) {
             log.error("Error saving users to file", e);
         }
     }
+    
+    /**
+     * Fold the journal into a new users snapshot. Writers only wait for the log rotation;
+     * anything saved after it lands in the fresh log and is replayed over the snapshot. The
+     * rotated log is only deleted once the snapshot is on stable storage; if writing it fails
+     * the log stays and is replayed, or folded into the next compaction.
+     */
+    private void compactJournal() {
+        try {
+            if (journal.size() < compactThresholdBytes || !journal.rotate()) {
+                return;
+            }
+            
+            synchronized (snapshotLock) {
+                writeSnapshot(index.snapshot().users(), true);
+            }
+            journal.discardRotated();
+            log.info("Compacted user journal into a new snapshot");
+        } catch (Exception e) {
+            log.error("Error compacting user journal; keeping the rotated log for replay", e);
+        }
+    }
+    
+    /**
+     * Rewrite the snapshot from the latest index state. Rewrites are serialized and read the
+     * index only once they hold the lock, so an older state can never overwrite a newer one.
+     * Only writing the file and queueing its commit happen under the lock; the caller awaits
+     * the result once it holds no locks, so concurrent GROUP_COMMIT rewrites share one fsync.
+     * 
+     * @return the write to await
+     */
+    private FileStorageUtil.PendingWrite saveUsersToFile() {
+        synchronized (snapshotLock) {
+            // A full snapshot covers every pending write-behind change as well
+            dirtyUserIds.clear();
+            try {
+                return writeSnapshot(index.snapshot().users(), false);
+            } catch (IOException e) {
+                log.error("Error saving users to file", e);
+                return FileStorageUtil.PendingWrite.DONE;
+            }
+        }
+    }
+    
+    /**
+     * @param durable fsync the snapshot before returning whatever the configured durability
+     * @return the write to await, already complete if durable
+     * @throws IOException if the snapshot could not be written, leaving the previous one
+     */
+    private FileStorageUtil.PendingWrite writeSnapshot(Collection<User> users, boolean durable) throws IOException {
+        FileStorageUtil.StreamWriter writer = out -> {
+            if (isBinaryFormat()) {
+                binaryCodec.writeSnapshot(users, out);
+                return;
+            }
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                for (User user : users) {
+                    userWriter.writeValue(generator, user);
+                }
+                generator.writeEndArray();
+            }
+        };
+        
+        FileStorageUtil.PendingWrite pending = FileStorageUtil.PendingWrite.DONE;
+        if (durable) {
+            fileStorageUtil.writeFileDurably(fileStorageUtil.getUsersFilePath(), writer);
+        } else {
+            pending = fileStorageUtil.writeFileDeferred(fileStorageUtil.getUsersFilePath(), writer);
+        }
+        log.info("Saved {} users to file", users.size());
+        return pending;
+    }
 }
@@ -0,0 +1,241 @@
+package com.auth.archetype.repository;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.h2.api.ErrorCode;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.FileStorageUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Engine backed by an embedded H2 database. Users are stored as binary-encoded rows with
+ * indexed username and normalized email columns for lookups, plus a version column that
+ * conditional updates compare against.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.storage.engine", havingValue = "h2")
+@RequiredArgsConstructor
+@Slf4j
+public class H2UserRepository implements UserRepository {
+    
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS users ("
+            + "id VARCHAR(64) PRIMARY KEY, "
+            + "username VARCHAR(255), "
+            + "email_key VARCHAR(320), "
+            + "data VARBINARY NOT NULL, "
+            + "version BIGINT DEFAULT 0 NOT NULL)";
+    // Databases created before versioning
+    private static final String ADD_VERSION_COLUMN = "ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL";
+    private static final String CREATE_USERNAME_INDEX = "CREATE INDEX IF NOT EXISTS users_username ON users(username)";
+    private static final String CREATE_EMAIL_INDEX = "CREATE INDEX IF NOT EXISTS users_email_key ON users(email_key)";
+    
+    private static final String SELECT_ALL = "SELECT data FROM users";
+    private static final String SELECT_BY_ID = "SELECT data FROM users WHERE id = ?";
+    private static final String SELECT_BY_USERNAME = "SELECT data FROM users WHERE username = ? LIMIT 1";
+    private static final String SELECT_BY_EMAIL = "SELECT data FROM users WHERE email_key = ? LIMIT 1";
+    private static final String SELECT_VERSION = "SELECT version FROM users WHERE id = ?";
+    private static final String INSERT = "INSERT INTO users (username, email_key, data, version, id) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_IF_VERSION = "UPDATE users SET username = ?, email_key = ?, data = ?, version = ? "
+            + "WHERE id = ? AND version = ?";
+    private static final String DELETE = "DELETE FROM users WHERE id = ?";
+    
+    private final FileStorageUtil fileStorageUtil;
+    private final UserBinaryCodec codec;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    // Defaults to a file database in the storage directory
+    @Value("${app.storage.h2.url:}")
+    private String url;
+    
+    @Value("${app.storage.h2.max-connections:16}")
+    private int maxConnections;
+    
+    private JdbcConnectionPool pool;
+    
+    @PostConstruct
+    public void init() {
+        String jdbcUrl = StringUtils.hasText(url) ? url : "jdbc:h2:file:" + fileStorageUtil.getUserDatabasePath();
+        pool = JdbcConnectionPool.create(jdbcUrl, "sa", "");
+        pool.setMaxConnections(maxConnections);
+        
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            statement.execute(ADD_VERSION_COLUMN);
+            statement.execute(CREATE_USERNAME_INDEX);
+            statement.execute(CREATE_EMAIL_INDEX);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not initialize embedded user database", e);
+        }
+        log.info("Using embedded H2 user storage at {}", jdbcUrl);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+    
+    @Override
+    public List<User> findAll() {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_ALL);
+             ResultSet rows = statement.executeQuery()) {
+            List<User> users = new ArrayList<>();
+            while (rows.next()) {
+                users.add(decode(rows.getBytes(1)));
+            }
+            return users;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error listing users", e);
+        }
+    }
+    
+    @Override
+    public Optional<User> findById(String id) {
+        return id == null ? Optional.empty() : findOne(SELECT_BY_ID, id);
+    }
+    
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return username == null ? Optional.empty() : findOne(SELECT_BY_USERNAME, username);
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return email == null ? Optional.empty() : findOne(SELECT_BY_EMAIL, UserIndex.normalizeEmail(email));
+    }
+    
+    @Override
+    public User save(User user) {
+        try (Connection connection = pool.getConnection()) {
+            // Overwrite whatever version is stored, retrying if another save slips in
+            while (true) {
+                long storedVersion = storedVersion(connection, user.getId());
+                if (write(connection, user, storedVersion)) {
+                    eventPublisher.publishEvent(new UserChangedEvent(user, false));
+                    return user;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error saving user " + user.getId(), e);
+        }
+    }
+    
+    @Override
+    public User saveIfCurrent(User user) {
+        long expectedVersion = user.getVersion();
+        
+        try (Connection connection = pool.getConnection()) {
+            if (!write(connection, user, expectedVersion)) {
+                throw new StaleUserException(user.getId(), expectedVersion, storedVersion(connection, user.getId()));
+            }
+            eventPublisher.publishEvent(new UserChangedEvent(user, false));
+            return user;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error saving user " + user.getId(), e);
+        }
+    }
+    
+    @Override
+    public void delete(User user) {
+        int deleted;
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DELETE)) {
+            statement.setString(1, user.getId());
+            deleted = statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error deleting user " + user.getId(), e);
+        }
+        
+        if (deleted > 0) {
+            eventPublisher.publishEvent(new UserChangedEvent(user, true));
+        }
+    }
+    
+    // Private helper methods
+    
+    /**
+     * Insert or update a user if its row is still at the expected version (0 meaning absent)
+     * 
+     * @return false if the row was at another version; the user is then left unchanged
+     */
+    private boolean write(Connection connection, User user, long expectedVersion) throws SQLException {
+        LocalDateTime previousUpdatedAt = user.getUpdatedAt();
+        user.setUpdatedAt(LocalDateTime.now());
+        user.setVersion(expectedVersion + 1);
+        
+        try (PreparedStatement statement = connection.prepareStatement(expectedVersion == 0 ? INSERT : UPDATE_IF_VERSION)) {
+            statement.setString(1, user.getUsername());
+            statement.setString(2, UserIndex.normalizeEmail(user.getEmail()));
+            statement.setBytes(3, codec.encode(user));
+            statement.setLong(4, user.getVersion());
+            statement.setString(5, user.getId());
+            if (expectedVersion != 0) {
+                statement.setLong(6, expectedVersion);
+            }
+            
+            if (statement.executeUpdate() == 1) {
+                return true;
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ErrorCode.DUPLICATE_KEY_1) {
+                throw e;
+            }
+        }
+        
+        user.setUpdatedAt(previousUpdatedAt);
+        user.setVersion(expectedVersion);
+        return false;
+    }
+    
+    private long storedVersion(Connection connection, String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_VERSION)) {
+            statement.setString(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : 0;
+            }
+        }
+    }
+    
+    private Optional<User> findOne(String sql, String key) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, key);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? Optional.of(decode(rows.getBytes(1))) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error looking up user", e);
+        }
+    }
+    
+    private User decode(byte[] data) {
+        try {
+            return codec.decode(data, 0, data.length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt user row", e);
+        }
+    }
+}
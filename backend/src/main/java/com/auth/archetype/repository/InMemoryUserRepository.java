@@ -0,0 +1,75 @@
+package com.auth.archetype.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+
+import com.auth.archetype.model.User;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-persistent engine that only keeps the indexes. Useful for tests, demos and as the
+ * baseline when comparing engines; everything is lost on restart.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.storage.engine", havingValue = "memory")
+@Slf4j
+public class InMemoryUserRepository implements UserRepository {
+
+    // The index is safe for concurrent writers, so saves need no lock of their own
+    private final UserIndex index = new UserIndex();
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public InMemoryUserRepository(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        log.info("Using in-memory user storage; users will not survive a restart");
+    }
+    
+    @Override
+    public List<User> findAll() {
+        return index.findAll();
+    }
+    
+    @Override
+    public Optional<User> findById(String id) {
+        return Optional.ofNullable(index.findById(id));
+    }
+    
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return Optional.ofNullable(index.findByUsername(username));
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(index.findByEmail(email));
+    }
+    
+    @Override
+    public User save(User user) {
+        user.setUpdatedAt(LocalDateTime.now());
+        index.putNextVersion(user, UserIndex.ANY_VERSION);
+        eventPublisher.publishEvent(new UserChangedEvent(user, false));
+        return user;
+    }
+    
+    @Override
+    public User saveIfCurrent(User user) {
+        user.setUpdatedAt(LocalDateTime.now());
+        index.putNextVersion(user, user.getVersion());
+        eventPublisher.publishEvent(new UserChangedEvent(user, false));
+        return user;
+    }
+    
+    @Override
+    public void delete(User user) {
+        if (index.remove(user.getId()) != null) {
+            eventPublisher.publishEvent(new UserChangedEvent(user, true));
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.auth.archetype.repository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.FileStorageUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * User store backed by fixed-size memory-mapped segment files, for populations too large to
+ * keep as objects on the heap.
+ * 
+ * Records are kept in the binary user encoding and decoded on every read, so the heap only
+ * holds the offset index and lookup keys while the OS page cache holds the data. Each record
+ * is framed as {@code [int capacity][int length][int crc32c][byte live][payload]}. Opening a
+ * store only scans record headers and keys.
+ * 
+ * Under the NONE and ASYNC durability levels an update is written in place when it fits the
+ * slot's capacity, and is otherwise appended at the tail with the old slot marked dead. An
+ * in-place write overwrites the only copy of the record, so a write torn by a power loss
+ * fails its checksum and the user is skipped on the next open; those levels already accept
+ * losing recent writes in that case. Under SYNC and GROUP_COMMIT every update is appended and
+ * forced before the old slot is marked dead, so a torn write leaves the previous version
+ * live. The price is a new slot per update, and dead slots are not reused.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.storage.engine", havingValue = "mapped")
+@Slf4j
+public class MappedUserRepository implements UserRepository {
+    
+    private static final byte[] SEGMENT_MAGIC = { 'B', 'A', 'U', 'M' };
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 13;
+    private static final int LIVE_OFFSET = 12;
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final UserBinaryCodec codec;
+    private final boolean forceWrites;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    
+    // id -> (segment index << 32 | record offset)
+    private final Map<String, Long> locations = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByUsername = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, UserBinaryCodec.UserKeys> keysById = new ConcurrentHashMap<>();
+    
+    private final Object writeLock = new Object();
+    private int tailOffset;
+    
+    public MappedUserRepository(FileStorageUtil fileStorageUtil, UserBinaryCodec codec,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${app.storage.mapped.segment-size-mb:64}") int segmentSizeMb) {
+        this.eventPublisher = eventPublisher;
+        this.directory = Paths.get(fileStorageUtil.getUserSegmentsPath());
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.codec = codec;
+        // Mapped pages are written back by the OS; only the stricter levels force each write
+        this.forceWrites = fileStorageUtil.getDurability() == FileStorageUtil.Durability.SYNC
+                || fileStorageUtil.getDurability() == FileStorageUtil.Durability.GROUP_COMMIT;
+    }
+    
+    @PostConstruct
+    public void init() {
+        try {
+            open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open mapped user segments in " + directory, e);
+        }
+    }
+    
+    /**
+     * Map existing segments and rebuild the in-memory index from their record headers
+     * 
+     * @throws IOException if a segment cannot be mapped
+     */
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().matches("users\\.seg\\.\\d{5}"))
+                    .sorted()
+                    .toList();
+        }
+        
+        synchronized (writeLock) {
+            for (Path file : files) {
+                MappedByteBuffer segment = map(file);
+                if (!hasSegmentHeader(segment)) {
+                    throw new IOException("Not a user segment file: " + file);
+                }
+                segments.add(segment);
+                tailOffset = scanSegment(segments.size() - 1, segment);
+            }
+            
+            if (segments.isEmpty()) {
+                addSegment();
+            }
+        }
+        
+        log.info("Opened {} user segments in {} with {} users", segments.size(), directory, locations.size());
+    }
+    
+    /**
+     * Flush all segments to disk
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (writeLock) {
+            segments.forEach(MappedByteBuffer::force);
+        }
+    }
+    
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>(locations.size());
+        for (String id : locations.keySet()) {
+            findById(id).ifPresent(users::add);
+        }
+        return users;
+    }
+    
+    @Override
+    public Optional<User> findById(String id) {
+        Long location = id == null ? null : locations.get(id);
+        if (location == null) {
+            return Optional.empty();
+        }
+        
+        User user = readRecord(location);
+        if (user == null) {
+            // Raced with an in-place rewrite or a relocation; re-read under the write lock
+            synchronized (writeLock) {
+                location = locations.get(id);
+                user = location == null ? null : readRecord(location);
+            }
+        }
+        return Optional.ofNullable(user);
+    }
+    
+    @Override
+    public Optional<User> findByUsername(String username) {
+        String id = username == null ? null : idsByUsername.get(username);
+        return id == null ? Optional.empty() : findById(id);
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String id = email == null ? null : idsByEmail.get(UserIndex.normalizeEmail(email));
+        return id == null ? Optional.empty() : findById(id);
+    }
+    
+    @Override
+    public User save(User user) {
+        return write(user, UserIndex.ANY_VERSION);
+    }
+    
+    @Override
+    public User saveIfCurrent(User user) {
+        return write(user, user.getVersion());
+    }
+    
+    @Override
+    public void delete(User user) {
+        Long location;
+        synchronized (writeLock) {
+            location = locations.remove(user.getId());
+            if (location != null) {
+                markDead(location);
+            }
+            unindex(user.getId());
+        }
+        
+        if (location != null) {
+            eventPublisher.publishEvent(new UserChangedEvent(user, true));
+        }
+    }
+    
+    // Private helper methods
+    
+    /**
+     * Encode outside the write lock against the version seen beforehand, and only re-encode
+     * if another save to the same user got in between
+     */
+    private User write(User user, long expectedVersion) {
+        user.setUpdatedAt(LocalDateTime.now());
+        long readVersion = user.getVersion();
+        
+        while (true) {
+            long storedVersion = storedVersion(user.getId());
+            if (expectedVersion != UserIndex.ANY_VERSION && expectedVersion != storedVersion) {
+                user.setVersion(readVersion);
+                throw new StaleUserException(user.getId(), expectedVersion, storedVersion);
+            }
+            user.setVersion(storedVersion + 1);
+            byte[] payload = codec.encode(user);
+            
+            synchronized (writeLock) {
+                if (storedVersion(user.getId()) != storedVersion) {
+                    continue;
+                }
+                
+                Long existing = locations.get(user.getId());
+                long location;
+                
+                if (existing != null && !forceWrites && capacityAt(existing) >= payload.length) {
+                    writeRecord(existing, capacityAt(existing), payload);
+                    location = existing;
+                } else {
+                    // The new copy is forced before the old one dies, so one of them is always intact
+                    location = append(payload);
+                    if (existing != null) {
+                        markDead(existing);
+                    }
+                }
+                
+                locations.put(user.getId(), location);
+                index(new UserBinaryCodec.UserKeys(
+                        user.getId(), user.getUsername(), user.getEmail(), user.getVersion()));
+            }
+            eventPublisher.publishEvent(new UserChangedEvent(user, false));
+            return user;
+        }
+    }
+    
+    private long storedVersion(String id) {
+        UserBinaryCodec.UserKeys keys = keysById.get(id);
+        return keys == null ? 0 : keys.version();
+    }
+    
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+    
+    private void addSegment() throws IOException {
+        Path file = directory.resolve(String.format("users.seg.%05d", segments.size()));
+        MappedByteBuffer segment = map(file);
+        segment.put(0, SEGMENT_MAGIC);
+        segment.putInt(SEGMENT_MAGIC.length, SEGMENT_VERSION);
+        segments.add(segment);
+        tailOffset = SEGMENT_HEADER_SIZE;
+        log.info("Created user segment {}", file);
+    }
+    
+    private static boolean hasSegmentHeader(MappedByteBuffer segment) {
+        byte[] magic = new byte[SEGMENT_MAGIC.length];
+        segment.get(0, magic);
+        return Arrays.equals(magic, SEGMENT_MAGIC) && segment.getInt(SEGMENT_MAGIC.length) == SEGMENT_VERSION;
+    }
+    
+    /**
+     * Index every live record in a segment. Later records win, since relocated records are
+     * always appended after the slot they replace.
+     * 
+     * @return offset just past the last record
+     */
+    private int scanSegment(int segmentIndex, MappedByteBuffer segment) throws IOException {
+        int offset = SEGMENT_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int capacity = segment.getInt(offset);
+            if (capacity <= 0 || offset + RECORD_HEADER_SIZE + capacity > segmentSize) {
+                break;
+            }
+            
+            if (segment.get(offset + LIVE_OFFSET) != 0) {
+                byte[] payload = readPayload(segment, offset);
+                if (payload == null) {
+                    log.warn("Skipping corrupt user record in segment {} at offset {}", segmentIndex, offset);
+                } else {
+                    UserBinaryCodec.UserKeys keys = codec.decodeKeys(payload, 0, payload.length);
+                    Long previous = locations.put(keys.id(), pack(segmentIndex, offset));
+                    if (previous != null) {
+                        markDead(previous);
+                    }
+                    index(keys);
+                }
+            }
+            
+            offset += RECORD_HEADER_SIZE + capacity;
+        }
+        return offset;
+    }
+    
+    private User readRecord(long location) {
+        MappedByteBuffer segment = segments.get(segmentOf(location));
+        int offset = offsetOf(location);
+        if (segment.get(offset + LIVE_OFFSET) == 0) {
+            return null;
+        }
+        
+        byte[] payload = readPayload(segment, offset);
+        if (payload == null) {
+            return null;
+        }
+        
+        try {
+            return codec.decode(payload, 0, payload.length);
+        } catch (IOException e) {
+            log.error("Undecodable user record at segment {} offset {}", segmentOf(location), offset, e);
+            return null;
+        }
+    }
+    
+    // Returns null when the length or checksum does not match, e.g. a torn concurrent write
+    private static byte[] readPayload(MappedByteBuffer segment, int offset) {
+        int capacity = segment.getInt(offset);
+        int length = segment.getInt(offset + 4);
+        if (length < 0 || length > capacity) {
+            return null;
+        }
+        
+        byte[] payload = new byte[length];
+        segment.get(offset + RECORD_HEADER_SIZE, payload);
+        
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.getInt(offset + 8) ? payload : null;
+    }
+    
+    private long append(byte[] payload) {
+        // Leave headroom so typical growth (new roles, biometric info) still fits in place
+        int capacity = Math.max(64, (payload.length + payload.length / 4 + 7) & ~7);
+        if (RECORD_HEADER_SIZE + capacity > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IllegalArgumentException("User record of " + payload.length + " bytes exceeds segment size");
+        }
+        
+        if (tailOffset + RECORD_HEADER_SIZE + capacity > segmentSize) {
+            try {
+                addSegment();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not create a new user segment", e);
+            }
+        }
+        
+        long location = pack(segments.size() - 1, tailOffset);
+        writeRecord(location, capacity, payload);
+        tailOffset += RECORD_HEADER_SIZE + capacity;
+        return location;
+    }
+    
+    private void writeRecord(long location, int capacity, byte[] payload) {
+        MappedByteBuffer segment = segments.get(segmentOf(location));
+        int offset = offsetOf(location);
+        
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        
+        segment.put(offset + RECORD_HEADER_SIZE, payload);
+        segment.putInt(offset + 4, payload.length);
+        segment.putInt(offset + 8, (int) crc.getValue());
+        segment.put(offset + LIVE_OFFSET, (byte) 1);
+        // Capacity goes last so a scan never sees a half-written record at the tail
+        segment.putInt(offset, capacity);
+        
+        if (forceWrites) {
+            segment.force(offset, RECORD_HEADER_SIZE + payload.length);
+        }
+    }
+    
+    private void markDead(long location) {
+        MappedByteBuffer segment = segments.get(segmentOf(location));
+        int offset = offsetOf(location);
+        segment.put(offset + LIVE_OFFSET, (byte) 0);
+        if (forceWrites) {
+            segment.force(offset + LIVE_OFFSET, 1);
+        }
+    }
+    
+    private int capacityAt(long location) {
+        return segments.get(segmentOf(location)).getInt(offsetOf(location));
+    }
+    
+    private void index(UserBinaryCodec.UserKeys keys) {
+        UserBinaryCodec.UserKeys previous = keysById.put(keys.id(), keys);
+        if (previous != null) {
+            if (previous.username() != null) {
+                idsByUsername.remove(previous.username(), keys.id());
+            }
+            if (previous.email() != null) {
+                idsByEmail.remove(UserIndex.normalizeEmail(previous.email()), keys.id());
+            }
+        }
+        
+        if (keys.username() != null) {
+            idsByUsername.put(keys.username(), keys.id());
+        }
+        if (keys.email() != null) {
+            idsByEmail.put(UserIndex.normalizeEmail(keys.email()), keys.id());
+        }
+    }
+    
+    private void unindex(String id) {
+        UserBinaryCodec.UserKeys keys = keysById.remove(id);
+        if (keys != null) {
+            if (keys.username() != null) {
+                idsByUsername.remove(keys.username(), id);
+            }
+            if (keys.email() != null) {
+                idsByEmail.remove(UserIndex.normalizeEmail(keys.email()), id);
+            }
+        }
+    }
+    
+    private static long pack(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+    
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+    
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
@@ -0,0 +1,423 @@
+package com.auth.archetype.repository;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.model.BiometricInfo;
+import com.auth.archetype.model.User;
+
+/**
+ * Compact binary encoding of the {@link User} and {@link BiometricInfo} model.
+ * 
+ * A snapshot starts with the magic bytes {@code BAUS} and a format version, followed by one
+ * {@code [int length][int crc32c][payload]} record per user. Strings are UTF-8 with a varint
+ * length prefix (0 meaning null), counters are varints and timestamps are epoch millis in UTC.
+ */
+@Component
+public class UserBinaryCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    
+    private static final byte[] MAGIC = { 'B', 'A', 'U', 'S' };
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+    
+    private static final int FLAG_BIOMETRIC_ENABLED = 1;
+    private static final int FLAG_ACCOUNT_LOCKED = 1 << 1;
+    private static final int FLAG_HAS_BIOMETRIC_INFO = 1 << 2;
+    // Records written before versioning lack the field and decode as version 0
+    private static final int FLAG_HAS_VERSION = 1 << 3;
+    
+    /**
+     * Check whether the leading bytes of a file are a binary snapshot header
+     * 
+     * @param head at least the first four bytes of the file
+     * @return true if the bytes carry the binary snapshot magic
+     */
+    public static boolean isBinarySnapshot(byte[] head) {
+        return head.length >= MAGIC.length && Arrays.equals(head, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+    
+    /**
+     * @return number of header bytes to peek at for format detection
+     */
+    public static int headerLength() {
+        return MAGIC.length;
+    }
+    
+    /**
+     * Write a complete snapshot
+     * 
+     * @param users users to write
+     * @param out destination; not closed
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(Iterable<User> users, OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(FORMAT_VERSION >>> 8);
+        out.write(FORMAT_VERSION);
+        
+        RecordBuffer buffer = new RecordBuffer();
+        byte[] header = new byte[8];
+        for (User user : users) {
+            buffer.reset();
+            encode(user, buffer);
+            
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.bytes, 0, buffer.length);
+            putInt(header, 0, buffer.length);
+            putInt(header, 4, (int) crc.getValue());
+            out.write(header);
+            out.write(buffer.bytes, 0, buffer.length);
+        }
+    }
+    
+    /**
+     * Read a complete snapshot, handing each user to the sink as soon as it is decoded
+     * 
+     * @param in source positioned at the start of the file
+     * @param sink receives every decoded user
+     * @return number of users read
+     * @throws IOException if the snapshot is unreadable or a record fails its checksum
+     */
+    public int readSnapshot(InputStream in, Consumer<User> sink) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!isBinarySnapshot(magic)) {
+            throw new IOException("Not a binary users snapshot");
+        }
+        
+        int version = data.readUnsignedShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary users snapshot version " + version);
+        }
+        
+        byte[] payload = new byte[4096];
+        int count = 0;
+        while (true) {
+            int length;
+            try {
+                length = data.readInt();
+            } catch (EOFException e) {
+                return count;
+            }
+            
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Invalid record length " + length + " after " + count + " users");
+            }
+            int checksum = data.readInt();
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            data.readFully(payload, 0, length);
+            
+            CRC32C crc = new CRC32C();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in record " + count);
+            }
+            
+            sink.accept(decode(payload, 0, length));
+            count++;
+        }
+    }
+    
+    /**
+     * Encode a single user, without record framing
+     * 
+     * @param user user to encode
+     * @return encoded bytes
+     */
+    public byte[] encode(User user) {
+        RecordBuffer buffer = new RecordBuffer();
+        encode(user, buffer);
+        return Arrays.copyOf(buffer.bytes, buffer.length);
+    }
+    
+    /**
+     * Decode a single user previously produced by {@link #encode(User)}
+     * 
+     * @param bytes source array
+     * @param offset start of the encoded user
+     * @param length encoded length
+     * @return decoded user
+     * @throws IOException if the bytes are malformed
+     */
+    public User decode(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            return decode(new RecordReader(bytes, offset, offset + length));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated user record", e);
+        }
+    }
+    
+    /**
+     * Decode only the lookup keys of an encoded user, skipping everything else
+     * 
+     * @param bytes source array
+     * @param offset start of the encoded user
+     * @param length encoded length
+     * @return id, username, email and version of the user
+     * @throws IOException if the bytes are malformed
+     */
+    public UserKeys decodeKeys(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            RecordReader in = new RecordReader(bytes, offset, offset + length);
+            String id = in.readString();
+            String username = in.readString();
+            in.skipString();
+            in.skipString();
+            String email = in.readString();
+            in.skipString();
+            for (int roles = in.readVarint(); roles > 0; roles--) {
+                in.skipString();
+            }
+            long version = (in.readVarint() & FLAG_HAS_VERSION) != 0 ? in.readLong() : 0;
+            return new UserKeys(id, username, email, version);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated user record", e);
+        }
+    }
+    
+    /**
+     * Lookup keys of an encoded user
+     */
+    public record UserKeys(String id, String username, String email, long version) {
+    }
+    
+    // Private helper methods
+    
+    private void encode(User user, RecordBuffer out) {
+        BiometricInfo bio = user.getBiometricInfo();
+        int flags = (user.isBiometricEnabled() ? FLAG_BIOMETRIC_ENABLED : 0)
+                | (user.isAccountLocked() ? FLAG_ACCOUNT_LOCKED : 0)
+                | (bio != null ? FLAG_HAS_BIOMETRIC_INFO : 0)
+                | (user.getVersion() != 0 ? FLAG_HAS_VERSION : 0);
+        
+        out.writeString(user.getId());
+        out.writeString(user.getUsername());
+        out.writeString(user.getFirstName());
+        out.writeString(user.getLastName());
+        out.writeString(user.getEmail());
+        out.writeString(user.getPassword());
+        
+        List<String> roles = user.getRoles();
+        out.writeVarint(roles != null ? roles.size() : 0);
+        if (roles != null) {
+            roles.forEach(out::writeString);
+        }
+        
+        out.writeVarint(flags);
+        if (user.getVersion() != 0) {
+            out.writeLong(user.getVersion());
+        }
+        out.writeString(user.getLastLoginIp());
+        out.writeTimestamp(user.getLastLoginAt());
+        out.writeString(user.getLastLoginMethod());
+        out.writeVarint(user.getFailedLoginAttempts());
+        out.writeTimestamp(user.getAccountLockedAt());
+        out.writeTimestamp(user.getCreatedAt());
+        out.writeTimestamp(user.getUpdatedAt());
+        
+        if (bio != null) {
+            out.writeString(bio.getType());
+            out.writeString(bio.getDeviceId());
+            out.writeString(bio.getPublicKeyId());
+            out.writeString(bio.getPublicKey());
+            out.writeString(bio.getChallenge());
+            out.writeTimestamp(bio.getEnrolledAt());
+            out.writeTimestamp(bio.getLastUsedAt());
+            out.writeVarint(bio.getUsageCount());
+        }
+    }
+    
+    private User decode(RecordReader in) {
+        User user = new User();
+        user.setId(in.readString());
+        user.setUsername(in.readString());
+        user.setFirstName(in.readString());
+        user.setLastName(in.readString());
+        user.setEmail(in.readString());
+        user.setPassword(in.readString());
+        
+        int roleCount = in.readVarint();
+        List<String> roles = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            roles.add(in.readString());
+        }
+        user.setRoles(roles);
+        
+        int flags = in.readVarint();
+        user.setBiometricEnabled((flags & FLAG_BIOMETRIC_ENABLED) != 0);
+        user.setAccountLocked((flags & FLAG_ACCOUNT_LOCKED) != 0);
+        if ((flags & FLAG_HAS_VERSION) != 0) {
+            user.setVersion(in.readLong());
+        }
+        user.setLastLoginIp(in.readString());
+        user.setLastLoginAt(in.readTimestamp());
+        user.setLastLoginMethod(in.readString());
+        user.setFailedLoginAttempts(in.readVarint());
+        user.setAccountLockedAt(in.readTimestamp());
+        user.setCreatedAt(in.readTimestamp());
+        user.setUpdatedAt(in.readTimestamp());
+        
+        if ((flags & FLAG_HAS_BIOMETRIC_INFO) != 0) {
+            BiometricInfo bio = new BiometricInfo();
+            bio.setType(in.readString());
+            bio.setDeviceId(in.readString());
+            bio.setPublicKeyId(in.readString());
+            bio.setPublicKey(in.readString());
+            bio.setChallenge(in.readString());
+            bio.setEnrolledAt(in.readTimestamp());
+            bio.setLastUsedAt(in.readTimestamp());
+            bio.setUsageCount(in.readVarint());
+            user.setBiometricInfo(bio);
+        }
+        
+        return user;
+    }
+    
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+    
+    /**
+     * Growable, reusable output buffer for a single record
+     */
+    private static final class RecordBuffer {
+        
+        private byte[] bytes = new byte[512];
+        private int length;
+        
+        void reset() {
+            length = 0;
+        }
+        
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+        
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+        
+        void writeTimestamp(LocalDateTime value) {
+            writeLong(value == null ? NULL_TIMESTAMP : value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+    
+    /**
+     * Cursor over an encoded record
+     */
+    private static final class RecordReader {
+        
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+        
+        RecordReader(byte[] bytes, int offset, int limit) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = limit;
+        }
+        
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = next();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IndexOutOfBoundsException("Malformed varint");
+        }
+        
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (next() & 0xFF);
+            }
+            return value;
+        }
+        
+        String readString() {
+            int length = readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (position + length > limit) {
+                throw new IndexOutOfBoundsException("String runs past end of record");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        
+        void skipString() {
+            int length = readVarint() - 1;
+            if (length > 0) {
+                if (position + length > limit) {
+                    throw new IndexOutOfBoundsException("String runs past end of record");
+                }
+                position += length;
+            }
+        }
+        
+        LocalDateTime readTimestamp() {
+            long millis = readLong();
+            return millis == NULL_TIMESTAMP ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+        }
+        
+        private byte next() {
+            if (position >= limit) {
+                throw new IndexOutOfBoundsException("Read past end of record");
+            }
+            return bytes[position++];
+        }
+    }
+}
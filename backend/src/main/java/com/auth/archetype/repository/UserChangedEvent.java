@@ -0,0 +1,13 @@
+package com.auth.archetype.repository;
+
+import com.auth.archetype.model.User;
+
+/**
+ * Published by the storage engines after a user was saved or deleted, so in-memory views of
+ * user state elsewhere can follow without polling the store
+ * 
+ * @param user the user as stored, carrying its new version, or the user that was deleted
+ * @param deleted whether the user was removed
+ */
+public record UserChangedEvent(User user, boolean deleted) {
+}
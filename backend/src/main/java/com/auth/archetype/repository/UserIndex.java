@@ -0,0 +1,225 @@
+package com.auth.archetype.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.PersistentHashMap;
+
+/**
+ * In-memory primary index by id plus secondary indexes by username and normalized email.
+ * 
+ * All three indexes live in one immutable {@link Snapshot} that writers replace with a
+ * compare-and-set, so readers never take a lock and always see the indexes at a single point
+ * in time. An update copies only the trie paths of the keys it touches, and a writer that
+ * loses the race just recomputes those paths. Users are copied on the way in and on the way
+ * out, so callers can never modify a published snapshot.
+ * 
+ * The index is safe for concurrent writers. Callers that persist changes must still order
+ * writes to the same user themselves.
+ */
+public class UserIndex {
+
+    /**
+     * Expected version that skips the version check
+     */
+    public static final long ANY_VERSION = -1;
+    
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+    
+    /**
+     * Keys and lockout flag a user had when it was last indexed
+     */
+    public record IndexedState(String username, String email, boolean accountLocked) {
+    }
+    
+    private record Entry(User user, IndexedState state) {
+    }
+    
+    /**
+     * Immutable, versioned view of the index. The users it holds are shared with later
+     * snapshots and must be treated as read-only.
+     */
+    public static final class Snapshot {
+        
+        private static final Snapshot EMPTY = new Snapshot(
+                0, PersistentHashMap.empty(), PersistentHashMap.empty(), PersistentHashMap.empty());
+        
+        private final long version;
+        private final PersistentHashMap<String, Entry> entriesById;
+        private final PersistentHashMap<String, String> idsByUsername;
+        private final PersistentHashMap<String, String> idsByEmail;
+        
+        private Snapshot(long version, PersistentHashMap<String, Entry> entriesById,
+                PersistentHashMap<String, String> idsByUsername, PersistentHashMap<String, String> idsByEmail) {
+            this.version = version;
+            this.entriesById = entriesById;
+            this.idsByUsername = idsByUsername;
+            this.idsByEmail = idsByEmail;
+        }
+        
+        public long version() {
+            return version;
+        }
+        
+        public int size() {
+            return entriesById.size();
+        }
+        
+        public User get(String id) {
+            Entry entry = id == null ? null : entriesById.get(id);
+            return entry == null ? null : entry.user();
+        }
+        
+        public List<User> users() {
+            List<User> users = new ArrayList<>(entriesById.size());
+            entriesById.forEach((id, entry) -> users.add(entry.user()));
+            return users;
+        }
+    }
+    
+    /**
+     * @return the current point-in-time view, for scans that must not copy every user
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+    
+    public User findById(String id) {
+        return copyOf(current.get().get(id));
+    }
+    
+    public User findByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        Snapshot snapshot = current.get();
+        return copyOf(snapshot.get(snapshot.idsByUsername.get(username)));
+    }
+    
+    public User findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        Snapshot snapshot = current.get();
+        return copyOf(snapshot.get(snapshot.idsByEmail.get(normalizeEmail(email))));
+    }
+    
+    public List<User> findAll() {
+        List<User> users = current.get().users();
+        users.replaceAll(User::copy);
+        return users;
+    }
+    
+    public int size() {
+        return current.get().size();
+    }
+    
+    /**
+     * Add or replace a user in all indexes, keeping the version it carries
+     * 
+     * @param user user to index
+     * @return state the user was previously indexed with, or null if it is new
+     */
+    public IndexedState put(User user) {
+        return put(user, ANY_VERSION, false);
+    }
+    
+    /**
+     * Add or replace a user in all indexes, stamping the version after the stored one on
+     * both the indexed copy and the given user
+     * 
+     * @param user user to index
+     * @param expectedVersion version the stored user must have (0 if it must not exist),
+     *        or {@link #ANY_VERSION}
+     * @return state the user was previously indexed with, or null if it is new
+     * @throws StaleUserException if the stored version does not match
+     */
+    public IndexedState putNextVersion(User user, long expectedVersion) {
+        return put(user, expectedVersion, true);
+    }
+    
+    /**
+     * Remove a user from all indexes
+     * 
+     * @param id id of the user
+     * @return the removed user, or null if it was not indexed
+     */
+    public User remove(String id) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            Entry entry = id == null ? null : snapshot.entriesById.get(id);
+            if (entry == null) {
+                return null;
+            }
+            
+            Snapshot next = new Snapshot(snapshot.version + 1,
+                    snapshot.entriesById.remove(id),
+                    removeKey(snapshot.idsByUsername, entry.state().username(), null, id),
+                    removeKey(snapshot.idsByEmail, entry.state().email(), null, id));
+            if (current.compareAndSet(snapshot, next)) {
+                return entry.user().copy();
+            }
+        }
+    }
+    
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private IndexedState put(User user, long expectedVersion, boolean stampVersion) {
+        String id = user.getId();
+        User stored = user.copy();
+        IndexedState state = new IndexedState(
+                user.getUsername(), normalizeEmail(user.getEmail()), user.isAccountLocked());
+        
+        while (true) {
+            Snapshot snapshot = current.get();
+            Entry previousEntry = snapshot.entriesById.get(id);
+            long storedVersion = previousEntry == null ? 0 : previousEntry.user().getVersion();
+            if (expectedVersion != ANY_VERSION && expectedVersion != storedVersion) {
+                throw new StaleUserException(id, expectedVersion, storedVersion);
+            }
+            if (stampVersion) {
+                stored.setVersion(storedVersion + 1);
+            }
+            
+            IndexedState previous = previousEntry == null ? null : previousEntry.state();
+            PersistentHashMap<String, String> idsByUsername = snapshot.idsByUsername;
+            PersistentHashMap<String, String> idsByEmail = snapshot.idsByEmail;
+            if (previous != null) {
+                idsByUsername = removeKey(idsByUsername, previous.username(), state.username(), id);
+                idsByEmail = removeKey(idsByEmail, previous.email(), state.email(), id);
+            }
+            if (state.username() != null) {
+                idsByUsername = idsByUsername.put(state.username(), id);
+            }
+            if (state.email() != null) {
+                idsByEmail = idsByEmail.put(state.email(), id);
+            }
+            
+            Snapshot next = new Snapshot(snapshot.version + 1,
+                    snapshot.entriesById.put(id, new Entry(stored, state)), idsByUsername, idsByEmail);
+            if (current.compareAndSet(snapshot, next)) {
+                user.setVersion(stored.getVersion());
+                return previous;
+            }
+        }
+    }
+    
+    // Drop a stale secondary key, unless it is kept or now belongs to another user
+    private static PersistentHashMap<String, String> removeKey(PersistentHashMap<String, String> ids,
+            String oldKey, String newKey, String id) {
+        if (oldKey == null || oldKey.equals(newKey) || !id.equals(ids.get(oldKey))) {
+            return ids;
+        }
+        return ids.remove(oldKey);
+    }
+    
+    private static User copyOf(User user) {
+        return user == null ? null : user.copy();
+    }
+}
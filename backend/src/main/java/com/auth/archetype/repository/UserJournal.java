@@ -0,0 +1,22 @@
+package com.auth.archetype.repository;
+
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.util.FileStorageUtil;
+import com.auth.archetype.util.RecordJournal;
+
+/**
+ * Append-only log of user changes, used when the repository runs in journal mode. Replayed
+ * on top of the last users snapshot at startup.
+ */
+@Component
+public class UserJournal extends RecordJournal {
+
+    public static final byte OP_UPSERT = 1;
+    public static final byte OP_DELETE = 2;
+    public static final byte OP_UPSERT_BINARY = 3;
+    
+    public UserJournal(FileStorageUtil fileStorageUtil) {
+        super(fileStorageUtil, fileStorageUtil.getUsersJournalFilePath(), "user journal");
+    }
+}
@@ -0,0 +1,105 @@
+package com.auth.archetype.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.auth.archetype.exception.ResourceNotFoundException;
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+
+/**
+ * Storage engine for users. The active engine is chosen with {@code app.storage.engine}:
+ * {@code file} (default), {@code memory}, {@code mapped} or {@code h2}.
+ */
+public interface UserRepository {
+
+    /**
+     * @return every stored user
+     */
+    List<User> findAll();
+    
+    Optional<User> findById(String id);
+    
+    Optional<User> findByUsername(String username);
+    
+    /**
+     * Look up a user by email, ignoring case and surrounding whitespace
+     */
+    Optional<User> findByEmail(String email);
+    
+    /**
+     * Create or replace a user, stamping its update time and next version. The last writer
+     * wins; use {@link #saveIfCurrent(User)} or {@link #update(String, Consumer)} when the
+     * change was derived from an earlier read.
+     * 
+     * @param user user to store
+     * @return the stored user
+     */
+    User save(User user);
+    
+    /**
+     * Store a user only if nobody saved it since it was read, i.e. the stored version still
+     * equals {@link User#getVersion()} (0 for a user that must not exist yet)
+     * 
+     * @param user user to store
+     * @return the stored user, carrying its new version
+     * @throws StaleUserException if the stored version has moved on
+     */
+    User saveIfCurrent(User user);
+    
+    /**
+     * Apply a change to the latest version of a user and store it atomically. The change may
+     * run more than once if it loses a race, so it must only modify the user it is given.
+     * 
+     * @param id id of the user
+     * @param change modification to apply
+     * @return the stored user, or empty if it does not exist
+     */
+    default Optional<User> update(String id, Consumer<User> change) {
+        while (true) {
+            Optional<User> current = findById(id);
+            if (current.isEmpty()) {
+                return current;
+            }
+            
+            User user = current.get();
+            change.accept(user);
+            try {
+                return Optional.of(saveIfCurrent(user));
+            } catch (StaleUserException e) {
+                // Another save won; re-apply the change on top of it
+            }
+        }
+    }
+    
+    /**
+     * Lock an account after a run of failed logins counted elsewhere. Already locked accounts
+     * are left alone, so repeated failures against one do not rewrite it.
+     * 
+     * @return the updated user, or empty if the username is unknown or already locked
+     */
+    default Optional<User> lockAfterFailedLogins(String username, int attempts) {
+        return findByUsername(username)
+                .filter(user -> !user.isAccountLocked())
+                .flatMap(user -> update(user.getId(), u -> u.lockAfterFailedLogins(attempts)));
+    }
+    
+    /**
+     * Record a successful login and reset the failed-attempt counter
+     * 
+     * @return the updated user, or empty if it does not exist
+     */
+    default Optional<User> recordLogin(String id, String loginIp, String loginMethod) {
+        return update(id, user -> user.updateLoginInfo(loginIp, loginMethod));
+    }
+    
+    void delete(User user);
+    
+    default void deleteById(String id) {
+        User user = findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
+        
+        delete(user);
+    }
+}
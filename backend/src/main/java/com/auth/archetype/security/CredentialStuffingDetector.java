@@ -0,0 +1,222 @@
+package com.auth.archetype.security;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.util.HeavyHitters;
+import com.auth.archetype.util.SlidingCountMinSketch;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming detector for credential stuffing, fed with every failed password or biometric
+ * login. Failures are counted per client IP, per username and per username pattern (the
+ * lowercased name with each run of digits collapsed, so {@code user0001} to {@code user9999}
+ * count together) in sliding-window count-min sketches, with the top offenders of each kind
+ * kept for the admin report. Memory is fixed whatever the number of distinct keys.
+ * 
+ * An IP whose failures in the window reach the block threshold is refused by
+ * {@link LoginRateLimitFilter} for the block duration. Usernames are only reported: blocking
+ * one would lock out its owner, which the per-username rate limit already avoids.
+ */
+@Component
+@Slf4j
+public class CredentialStuffingDetector {
+    
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SUB_WINDOWS = 6;
+    
+    @Value("${app.stuffing.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.stuffing.window-seconds:300}")
+    private long windowSeconds;
+    
+    @Value("${app.stuffing.sketch-width:16384}")
+    private int sketchWidth;
+    
+    @Value("${app.stuffing.top-k:20}")
+    private int topK;
+    
+    @Value("${app.stuffing.block-threshold:100}")
+    private long blockThreshold;
+    
+    @Value("${app.stuffing.block-seconds:900}")
+    private long blockSeconds;
+    
+    @Value("${app.stuffing.max-blocked:10000}")
+    private int maxBlocked;
+    
+    private SlidingCountMinSketch ipSketch;
+    private HeavyHitters ips;
+    private HeavyHitters usernames;
+    private HeavyHitters usernamePatterns;
+    private ScheduledExecutorService scheduler;
+    
+    // IP to the epoch millis its block ends
+    private final Map<String, Long> blockedIps = new ConcurrentHashMap<>();
+    
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder blocksIssued = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        
+        ipSketch = new SlidingCountMinSketch(SKETCH_DEPTH, sketchWidth, SUB_WINDOWS);
+        ips = new HeavyHitters(ipSketch, topK);
+        usernames = new HeavyHitters(new SlidingCountMinSketch(SKETCH_DEPTH, sketchWidth, SUB_WINDOWS), topK);
+        usernamePatterns = new HeavyHitters(new SlidingCountMinSketch(SKETCH_DEPTH, sketchWidth, SUB_WINDOWS), topK);
+        
+        long rotateMillis = Math.max(1, windowSeconds * 1000 / SUB_WINDOWS);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "credential-stuffing-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::rotate, rotateMillis, rotateMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+    
+    /**
+     * Count a failed login
+     * 
+     * @param clientIp client address, or null if unknown
+     * @param username attempted username, or null if none was given
+     */
+    public void recordFailure(String clientIp, String username) {
+        if (!enabled) {
+            return;
+        }
+        failures.increment();
+        
+        // Discounting the sketch's collision noise keeps a flood of distinct IPs from getting
+        // innocent ones blocked
+        if (clientIp != null && ips.add(clientIp) - ipSketch.expectedOvercount() >= blockThreshold) {
+            block(clientIp);
+        }
+        if (username != null && !username.isBlank()) {
+            String normalized = username.strip().toLowerCase(Locale.ROOT);
+            usernames.add(normalized);
+            usernamePatterns.add(patternOf(normalized));
+        }
+    }
+    
+    /**
+     * @return milliseconds left on the IP's block, or 0 if it is not blocked
+     */
+    public long blockedForMillis(String clientIp) {
+        if (!enabled || blockedIps.isEmpty()) {
+            return 0;
+        }
+        
+        Long until = blockedIps.get(clientIp);
+        if (until == null) {
+            return 0;
+        }
+        long left = until - System.currentTimeMillis();
+        if (left <= 0) {
+            blockedIps.remove(clientIp, until);
+            return 0;
+        }
+        return left;
+    }
+    
+    /**
+     * Lift an IP's block early
+     * 
+     * @return true if the IP was blocked
+     */
+    public boolean unblock(String clientIp) {
+        return blockedIps.remove(clientIp) != null;
+    }
+    
+    /**
+     * Top failing IPs, usernames and username patterns over the window, and the block list
+     */
+    public Map<String, Object> getReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        if (!enabled) {
+            return report;
+        }
+        
+        report.put("windowSeconds", windowSeconds);
+        report.put("failures", failures.sum());
+        report.put("topIps", ips.top());
+        report.put("topUsernames", usernames.top());
+        report.put("topUsernamePatterns", usernamePatterns.top());
+        
+        Map<String, String> blocked = new LinkedHashMap<>();
+        blockedIps.forEach((ip, until) -> blocked.put(ip, Instant.ofEpochMilli(until).toString()));
+        report.put("blockedIps", blocked);
+        report.put("blocksIssued", blocksIssued.sum());
+        return report;
+    }
+    
+    // Private helper methods
+    
+    private void block(String clientIp) {
+        if (blockedIps.size() >= maxBlocked && !blockedIps.containsKey(clientIp)) {
+            return;
+        }
+        
+        long until = System.currentTimeMillis() + blockSeconds * 1000;
+        if (blockedIps.put(clientIp, until) == null) {
+            blocksIssued.increment();
+            log.warn("Blocking {} for {} s after repeated failed logins", clientIp, blockSeconds);
+        }
+    }
+    
+    private void rotate() {
+        try {
+            ips.rotate();
+            usernames.rotate();
+            usernamePatterns.rotate();
+            
+            long now = System.currentTimeMillis();
+            blockedIps.values().removeIf(until -> until <= now);
+        } catch (Exception e) {
+            log.error("Error rotating credential stuffing window", e);
+        }
+    }
+    
+    // Each run of digits becomes one '#'
+    private static String patternOf(String username) {
+        StringBuilder pattern = new StringBuilder(username.length());
+        boolean inDigits = false;
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inDigits) {
+                    pattern.append('#');
+                }
+                inDigits = true;
+            } else {
+                pattern.append(c);
+                inDigits = false;
+            }
+        }
+        return pattern.toString();
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import com.auth.archetype.model.User;
-import com.auth.archetype.repository.FileUserRepository;
+import com.auth.archetype.repository.UserRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,13 +16,14 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CustomUserDetailsService implements UserDetailsService {
 
-    private final FileUserRepository userRepository;
+    private final UserRepository userRepository;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> {
-                    log.error("User not found with username: {}", username);
+                    // Routine during credential stuffing; failed logins are logged by AuthServiceImpl
+                    log.debug("User not found with username: {}", username);
                     return new UsernameNotFoundException("User not found with username: " + username);
                 });
                 
@@ -39,4 +40,4 @@ public class CustomUserDetailsService implements UserDetailsService {
                 
         return UserPrincipal.create(user);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.auth.archetype.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.util.LogSampler;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Consecutive failed logins per username, counted in memory. The user store is written only
+ * when a count reaches {@link User#MAX_FAILED_LOGIN_ATTEMPTS} and the account gets locked,
+ * not on every failure, so a flood of bad passwords costs no file rewrites.
+ * 
+ * Counts live in a bounded Caffeine cache and expire after a period without failures;
+ * usernames that do not exist are counted like any other and age out the same way. Counts
+ * are lost on restart, which at worst grants a few more attempts before the lock. Failure
+ * log lines are sampled.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FailedLoginTracker {
+    
+    @Value("${app.login-failures.max-tracked:100000}")
+    private long maxTracked;
+    
+    @Value("${app.login-failures.expire-minutes:60}")
+    private long expireMinutes;
+    
+    @Value("${app.login-failures.log-per-second:10}")
+    private int logPerSecond;
+    
+    private final UserRepository userRepository;
+    
+    private Cache<String, AtomicInteger> failures;
+    private LogSampler logSampler;
+    
+    private final LongAdder failuresRecorded = new LongAdder();
+    private final LongAdder accountsLocked = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        failures = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+                .build();
+        logSampler = new LogSampler(logPerSecond);
+    }
+    
+    /**
+     * Count a failed login, locking the account when it reaches the limit
+     * 
+     * @param username attempted username, or null if none was given
+     * @param reason short description of the failure for the log
+     */
+    public void recordFailure(String username, String reason) {
+        failuresRecorded.increment();
+        
+        long suppressed = logSampler.sample();
+        if (suppressed >= 0) {
+            log.warn("Login failed for user: {} ({}; {} similar messages suppressed)", username, reason, suppressed);
+        }
+        
+        if (username == null) {
+            return;
+        }
+        
+        int attempts = failures.get(username, key -> new AtomicInteger()).incrementAndGet();
+        if (attempts >= User.MAX_FAILED_LOGIN_ATTEMPTS) {
+            // Start over so an account unlocked by an admin gets the full number of attempts again
+            failures.invalidate(username);
+            if (userRepository.lockAfterFailedLogins(username, attempts).isPresent()) {
+                accountsLocked.increment();
+                log.warn("Account locked after {} failed logins: {}", attempts, username);
+            }
+        }
+    }
+    
+    /**
+     * Forget a username's failures after it logs in successfully
+     */
+    public void reset(String username) {
+        failures.invalidate(username);
+    }
+    
+    /**
+     * @return consecutive failed logins counted for a username since its last success or lock
+     */
+    public int failures(String username) {
+        AtomicInteger attempts = failures.getIfPresent(username);
+        return attempts != null ? attempts.get() : 0;
+    }
+    
+    /**
+     * Counters and the number of usernames tracked
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("failures", failuresRecorded.sum());
+        stats.put("accountsLocked", accountsLocked.sum());
+        stats.put("trackedUsernames", failures.estimatedSize());
+        stats.put("maxTracked", maxTracked);
+        return stats;
+    }
+}
@@ -2,6 +2,7 @@ package com.auth.archetype.security;
 
 import java.io.IOException;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,7 +25,14 @@ import lombok.extern.slf4j.Slf4j;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
+    private final VerifiedTokenCache tokenCache;
     private final UserDetailsService userDetailsService;
+    private final SecurityStampRegistry securityStamps;
+    private final TokenRevocationStore revocations;
+    
+    // Build the principal from the token claims instead of loading the user on every request
+    @Value("${jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -34,14 +42,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
             
             if (StringUtils.hasText(jwt) && SecurityContextHolder.getContext().getAuthentication() == null) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
+                // One parse checks the signature and expiry and yields every claim we need;
+                // tokens seen before are served from the cache when it is enabled
+                VerifiedToken token = tokenCache.verify(jwt, tokenProvider::verify);
+                String username = token.subject();
                 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = loadPrincipal(token);
                 
-                if (tokenProvider.validateToken(jwt, userDetails)) {
+                if (userDetails != null && username.equals(userDetails.getUsername())) {
+                    // The verified token rides along as the credentials so logout can revoke it
                     UsernamePasswordAuthenticationToken authentication = 
                             new UsernamePasswordAuthenticationToken(
-                                    userDetails, null, userDetails.getAuthorities());
+                                    userDetails, token, userDetails.getAuthorities());
                     
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     
@@ -56,6 +68,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
+    /**
+     * @return the principal for a verified token, or null if it was revoked or its security
+     *         stamp is stale
+     */
+    private UserDetails loadPrincipal(VerifiedToken token) {
+        // Checked on every request, cache hits included, so logout takes effect at once
+        if (revocations.isRevoked(token)) {
+            log.debug("Rejected revoked token for user: {}", token.subject());
+            return null;
+        }
+        
+        if (!statelessPrincipal || token.securityStamp() == null || token.userId() == null) {
+            return userDetailsService.loadUserByUsername(token.subject());
+        }
+        
+        if (!securityStamps.isCurrent(token.userId(), token.securityStamp())) {
+            log.debug("Rejected token with stale security stamp for user: {}", token.subject());
+            return null;
+        }
+        return UserPrincipal.fromToken(token);
+    }
+    
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         
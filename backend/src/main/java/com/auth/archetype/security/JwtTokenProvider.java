@@ -1,27 +1,42 @@
 package com.auth.archetype.security;
 
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.List;
+import java.util.UUID;
 
 import javax.crypto.SecretKey;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import com.auth.archetype.model.User;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtTokenProvider {
 
+    private final SigningKeyRing keyRing;
+    private final RefreshTokenStore refreshTokens;
+    private final TokenRevocationStore revocations;
+    
     @Value("${jwt.secret}")
     private String jwtSecret;
     
@@ -31,105 +46,145 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-expiration}")
     private long refreshExpiration;
     
+    // Deriving the key and building the parser are not free; both are immutable and thread-safe
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        
+        // The key is picked per token from its kid header, so one parser serves every key
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declares the header parameter raw, so an override cannot add <?>
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveVerificationKey(header);
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * Start a new session: a fresh refresh-token family and the first token pair in it
+     */
+    public TokenPair generateTokenPair(User user) {
+        return generateTokenPair(user, refreshTokens.startFamily(), 0);
+    }
+    
+    /**
+     * Generate the token pair for a given generation of a refresh-token family
+     */
+    public TokenPair generateTokenPair(User user, long familyId, int generation) {
+        return new TokenPair(generateToken(user, familyId), generateRefreshToken(user, familyId, generation));
+    }
+    
     /**
      * Generate JWT token for a user
      */
-    public String generateToken(User user) {
+    public String generateToken(User user, long familyId) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
         
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        
-        return Jwts.builder()
+        return sign(Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getUsername())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .claim("id", user.getId())
                 .claim("roles", user.getRoles())
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+                .claim("sst", SecurityStampRegistry.stampOf(user))
+                .claim("rev", revocations.revocationEpoch(user.getId()))
+                .claim("fam", familyId));
     }
     
     /**
      * Generate refresh token for a user
      */
-    public String generateRefreshToken(User user) {
+    public String generateRefreshToken(User user, long familyId, int generation) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + refreshExpiration);
         
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        
-        return Jwts.builder()
+        return sign(Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getUsername())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .claim("id", user.getId())
                 .claim("refresh", true)
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
-    }
-    
-    /**
-     * Validate JWT token
-     */
-    public boolean validateToken(String token, UserDetails userDetails) {
-        try {
-            final String username = getUsernameFromToken(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (Exception e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-            return false;
-        }
+                .claim("sst", SecurityStampRegistry.stampOf(user))
+                .claim("rev", revocations.revocationEpoch(user.getId()))
+                .claim("fam", familyId)
+                .claim("gen", generation));
     }
     
     /**
-     * Extract username from JWT token
+     * Parse a JWT once, checking its signature and expiry
+     * 
+     * @param token compact JWT
+     * @return the verified claims
+     * @throws JwtException if the token is malformed, tampered with or expired
+     * @throws IllegalArgumentException if the token is empty
      */
-    public String getUsernameFromToken(String token) {
-        return getClaimFromToken(token, Claims::getSubject);
-    }
-    
-    /**
-     * Extract user ID from JWT token
-     */
-    public String getUserIdFromToken(String token) {
+    public VerifiedToken verify(String token) {
         Claims claims = getAllClaimsFromToken(token);
-        return claims.get("id", String.class);
+        
+        List<String> roles = new ArrayList<>();
+        if (claims.get("roles") instanceof List<?> values) {
+            values.forEach(role -> roles.add(String.valueOf(role)));
+        }
+        
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.getId(),
+                claims.get("id", String.class),
+                roles,
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()),
+                Boolean.TRUE.equals(claims.get("refresh", Boolean.class)),
+                claims.get("sst") instanceof Number stamp ? stamp.intValue() : null,
+                claims.get("fam") instanceof Number family ? family.longValue() : null,
+                claims.get("gen") instanceof Number generation ? generation.intValue() : null,
+                claims.get("rev") instanceof Number epoch ? epoch.longValue() : null);
     }
     
     /**
-     * Extract expiration date from JWT token
+     * Extract all claims from JWT token
      */
-    public Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
+    private Claims getAllClaimsFromToken(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
     
-    /**
-     * Extract claim from JWT token
-     */
-    public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = getAllClaimsFromToken(token);
-        return claimsResolver.apply(claims);
+    // ES256 with the current ring key when enabled, otherwise HS512 with the shared secret
+    private String sign(JwtBuilder builder) {
+        if (keyRing.isEnabled()) {
+            SigningKeyRing.SigningKey key = keyRing.current();
+            return builder
+                    .setHeaderParam(JwsHeader.KEY_ID, key.kid())
+                    .signWith(key.privateKey(), SignatureAlgorithm.ES256)
+                    .compact();
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS512).compact();
     }
     
-    /**
-     * Extract all claims from JWT token
-     */
-    private Claims getAllClaimsFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    // Tokens without a kid are HS512 tokens, including those issued before switching to ES256.
+    // jjwt rejects a key that does not match the header's alg, so the two cannot be confused.
+    private Key resolveVerificationKey(JwsHeader<?> header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            return signingKey;
+        }
         
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Key key = keyRing.verificationKey(kid);
+        if (key == null) {
+            throw new JwtException("Unknown signing key: " + kid);
+        }
+        return key;
     }
     
-    /**
-     * Check if JWT token is expired
-     */
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
     }
 }
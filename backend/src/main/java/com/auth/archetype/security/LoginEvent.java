@@ -0,0 +1,62 @@
+package com.auth.archetype.security;
+
+import java.time.LocalDateTime;
+
+import com.auth.archetype.model.BiometricInfo;
+import com.auth.archetype.model.User;
+
+/**
+ * Bookkeeping left over from a login once its response is known, applied off the request
+ * thread by {@link LoginEventQueue}
+ */
+public sealed interface LoginEvent {
+    
+    /**
+     * A completed password or biometric login. Biometric type and device are only set for
+     * biometric logins.
+     */
+    record Succeeded(String userId, String username, String loginIp, String loginMethod, LocalDateTime at,
+            String biometricType, String deviceId) implements LoginEvent {
+        
+        public static Succeeded password(User user, String loginIp) {
+            return new Succeeded(user.getId(), user.getUsername(), loginIp, "PASSWORD", LocalDateTime.now(), null, null);
+        }
+        
+        public static Succeeded biometric(User user, String loginIp, String biometricType, String deviceId) {
+            return new Succeeded(user.getId(), user.getUsername(), loginIp, "BIOMETRIC", LocalDateTime.now(),
+                    biometricType, deviceId);
+        }
+        
+        public boolean isBiometric() {
+            return "BIOMETRIC".equals(loginMethod);
+        }
+        
+        /**
+         * Record the login on a user; used on the stored user and on the copy in the response
+         */
+        public void applyTo(User user) {
+            if (isBiometric()) {
+                BiometricInfo bioInfo = user.getBiometricInfo();
+                if (bioInfo == null) {
+                    // If user has biometric enabled but no info, create a default one
+                    bioInfo = BiometricInfo.create(
+                        biometricType != null ? biometricType : "fingerprint",
+                        deviceId != null ? deviceId : "default-device"
+                    );
+                    user.setBiometricInfo(bioInfo);
+                }
+                bioInfo.incrementUsage(at);
+            }
+            user.updateLoginInfo(loginIp, loginMethod, at);
+        }
+    }
+    
+    /**
+     * A rejected login
+     * 
+     * @param username attempted username, or null if none was given
+     * @param reason short description for the log
+     */
+    record Failed(String username, String reason) implements LoginEvent {
+    }
+}
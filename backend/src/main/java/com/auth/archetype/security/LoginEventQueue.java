@@ -0,0 +1,261 @@
+package com.auth.archetype.security;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.util.RingBuffer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies {@link LoginEvent}s off the request thread, so a login response waits only for the
+ * password check and token signing. Events go onto a bounded {@link RingBuffer} drained by a
+ * single consumer thread, which applies them in batches: the logins of one user within a
+ * batch are stored in a single update, failures go to {@link FailedLoginTracker}, and
+ * successful logins are written to the {@code com.auth.archetype.audit} log.
+ * 
+ * When the ring is full the overflow policy decides: {@code caller-runs} (the default) applies
+ * the event on the publishing thread as before this queue existed, {@code block} waits up to
+ * the block timeout for room and then drops it, and {@code drop} drops it at once. Only
+ * successful logins are ever dropped, and counted: a failure that finds no room is applied on
+ * the publishing thread whatever the policy, so every attempt counts towards the lockout.
+ * On shutdown publishing falls back to the calling thread and the consumer drains what is
+ * left before the user store closes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoginEventQueue {
+    
+    private static final Logger AUDIT = LoggerFactory.getLogger("com.auth.archetype.audit");
+    
+    // Backstop for a missed wake-up; producers normally unpark the consumer themselves
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    
+    public enum OverflowPolicy {
+        CALLER_RUNS, BLOCK, DROP
+    }
+    
+    @Value("${app.login-events.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.login-events.capacity:8192}")
+    private int capacity;
+    
+    @Value("${app.login-events.max-batch:256}")
+    private int maxBatch;
+    
+    @Value("${app.login-events.overflow:caller-runs}")
+    private String overflow;
+    
+    @Value("${app.login-events.block-timeout-ms:50}")
+    private long blockTimeoutMs;
+    
+    @Value("${app.login-events.shutdown-timeout-seconds:10}")
+    private long shutdownTimeoutSeconds;
+    
+    private final UserRepository userRepository;
+    private final FailedLoginTracker failedLogins;
+    
+    private RingBuffer<LoginEvent> ring;
+    private OverflowPolicy overflowPolicy;
+    private Thread consumer;
+    private volatile boolean consumerParked;
+    private volatile boolean closed;
+    
+    private final LongAdder published = new LongAdder();
+    private final LongAdder appliedByCaller = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLong largestBatch = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        overflowPolicy = OverflowPolicy.valueOf(overflow.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        if (!enabled) {
+            return;
+        }
+        
+        ring = new RingBuffer<>(capacity);
+        consumer = new Thread(this::consume, "login-events");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info("Login events applied asynchronously: {} slots, batches of up to {}, {} on overflow",
+                ring.capacity(), maxBatch, overflow);
+    }
+    
+    /**
+     * Stop taking events and apply the ones already queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (ring == null) {
+            return;
+        }
+        
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (consumer.isAlive()) {
+            log.warn("Login events still pending after {} s: {}", shutdownTimeoutSeconds, ring.size());
+        } else {
+            // Events published while the consumer was finishing
+            drainBatches();
+        }
+    }
+    
+    /**
+     * Queue an event, or apply or drop it as the overflow policy says if the queue is full.
+     * Failures are applied rather than dropped under every policy.
+     */
+    public void publish(LoginEvent event) {
+        published.increment();
+        if (ring == null || closed) {
+            applyNow(event);
+            return;
+        }
+        
+        if (ring.offer(event) || (overflowPolicy == OverflowPolicy.BLOCK && offerWithin(event, blockTimeoutMs))) {
+            if (consumerParked) {
+                LockSupport.unpark(consumer);
+            }
+            return;
+        }
+        
+        // A dropped failure would be a free guess against the lockout
+        if (overflowPolicy == OverflowPolicy.CALLER_RUNS || event instanceof LoginEvent.Failed) {
+            applyNow(event);
+        } else {
+            dropped.increment();
+        }
+    }
+    
+    /**
+     * Queue depth and counters
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ring != null);
+        stats.put("overflowPolicy", overflowPolicy);
+        stats.put("published", published.sum());
+        stats.put("applied", applied.sum());
+        stats.put("appliedByCaller", appliedByCaller.sum());
+        stats.put("dropped", dropped.sum());
+        if (ring != null) {
+            stats.put("queued", ring.size());
+            stats.put("capacity", ring.capacity());
+            stats.put("batches", batchCount);
+            stats.put("averageBatch", batchCount > 0 ? (double) applied.sum() / batchCount : 0.0);
+            stats.put("largestBatch", largestBatch.get());
+        }
+        return stats;
+    }
+    
+    // Private helper methods
+    
+    private void consume() {
+        while (true) {
+            if (drainBatches() > 0) {
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            
+            // Producers check the flag after publishing, so re-check the ring once it is set
+            consumerParked = true;
+            if (ring.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            consumerParked = false;
+        }
+    }
+    
+    /**
+     * @return the number of events applied
+     */
+    private int drainBatches() {
+        List<LoginEvent> batch = new ArrayList<>();
+        int total = 0;
+        while (ring.drain(batch::add, maxBatch) > 0) {
+            applyBatch(batch);
+            applied.add(batch.size());
+            batches.increment();
+            largestBatch.accumulateAndGet(batch.size(), Math::max);
+            total += batch.size();
+            batch.clear();
+        }
+        return total;
+    }
+    
+    private void applyBatch(List<LoginEvent> batch) {
+        // Each user's logins in the batch become one store update
+        Map<String, List<LoginEvent.Succeeded>> loginsByUser = new LinkedHashMap<>();
+        for (LoginEvent event : batch) {
+            try {
+                if (event instanceof LoginEvent.Succeeded succeeded) {
+                    failedLogins.reset(succeeded.username());
+                    loginsByUser.computeIfAbsent(succeeded.userId(), id -> new ArrayList<>()).add(succeeded);
+                    AUDIT.info("{} login for user: {} from {}", succeeded.loginMethod(), succeeded.username(),
+                            succeeded.loginIp());
+                } else if (event instanceof LoginEvent.Failed failed) {
+                    failedLogins.recordFailure(failed.username(), failed.reason());
+                }
+            } catch (Exception e) {
+                log.error("Error applying login event {}", event, e);
+            }
+        }
+        
+        loginsByUser.forEach((userId, logins) -> {
+            try {
+                userRepository.update(userId, user -> logins.forEach(login -> login.applyTo(user)));
+            } catch (Exception e) {
+                log.error("Error recording {} logins for user id: {}", logins.size(), userId, e);
+            }
+        });
+    }
+    
+    private void applyNow(LoginEvent event) {
+        appliedByCaller.increment();
+        applyBatch(List.of(event));
+    }
+    
+    private boolean offerWithin(LoginEvent event, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        do {
+            if (consumerParked) {
+                LockSupport.unpark(consumer);
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (ring.offer(event)) {
+                return true;
+            }
+        } while (System.nanoTime() < deadline && !closed);
+        return false;
+    }
+}
@@ -0,0 +1,179 @@
+package com.auth.archetype.security;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.util.LatencyHistogram;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Password login in four stages over a single user record: resolve the user, verify the
+ * password, record the login and mint the token pair. Replaces the authentication manager
+ * round trip, which loaded the user once for the check and again for the response. Recording
+ * only queues a {@link LoginEvent} for {@link LoginEventQueue}; the user store is written on
+ * the request thread only to store a rehashed password.
+ * 
+ * Failures come back as shared results rather than exceptions. The time spent in each stage
+ * is kept in a histogram so slow logins can be traced to the stage responsible.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginPipeline {
+    
+    // IP would come from the request in a real app
+    private static final String LOGIN_IP = "0.0.0.0";
+    
+    private static final Result UNKNOWN_USER = Result.failed("User not found");
+    private static final Result ACCOUNT_LOCKED = Result.failed("Account locked");
+    private static final Result BAD_PASSWORD = Result.failed("Bad credentials");
+    
+    public enum Stage {
+        RESOLVE, VERIFY, RECORD, MINT, TOTAL
+    }
+    
+    public enum Outcome {
+        SUCCESS, BIOMETRIC_REQUIRED, FAILED
+    }
+    
+    /**
+     * Outcome of a login. Tokens are only set on success and the user only when the password
+     * was right; failure describes what went wrong, for the log only.
+     */
+    public record Result(Outcome outcome, User user, TokenPair tokens, String failure) {
+        
+        static Result success(User user, TokenPair tokens) {
+            return new Result(Outcome.SUCCESS, user, tokens, null);
+        }
+        
+        static Result biometricRequired(User user) {
+            return new Result(Outcome.BIOMETRIC_REQUIRED, user, null, null);
+        }
+        
+        static Result failed(String failure) {
+            return new Result(Outcome.FAILED, null, null, failure);
+        }
+    }
+    
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JwtTokenProvider tokenProvider;
+    private final LoginEventQueue loginEvents;
+    
+    private final Map<Stage, LatencyHistogram> timings = newTimings();
+    
+    // Checked against for unknown usernames; created on first use so startup does not pay for it
+    private volatile String unknownUserHash;
+    
+    /**
+     * Run a password login. Users with biometrics enabled stop after the password check and
+     * are not recorded as logged in.
+     * 
+     * @throws com.auth.archetype.exception.ServiceOverloadedException if the password hashing
+     *         pool is saturated; nothing is recorded in that case
+     */
+    public Result login(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            User user = username != null ? userRepository.findByUsername(username).orElse(null) : null;
+            long resolved = System.nanoTime();
+            record(Stage.RESOLVE, start, resolved);
+            
+            if (user == null) {
+                // Hash anyway so an unknown username takes as long as a wrong password
+                passwordEncoder.matches(password != null ? password : "", unknownUserHash());
+                record(Stage.VERIFY, resolved, System.nanoTime());
+                return UNKNOWN_USER;
+            }
+            if (user.isAccountLocked()) {
+                return ACCOUNT_LOCKED;
+            }
+            
+            String checkedHash = user.getPassword();
+            if (password == null || !passwordEncoder.matches(password, checkedHash)) {
+                record(Stage.VERIFY, resolved, System.nanoTime());
+                return BAD_PASSWORD;
+            }
+            String rehashed = passwordEncoder.upgradeEncoding(checkedHash) ? passwordEncoder.encode(password) : null;
+            long verified = System.nanoTime();
+            record(Stage.VERIFY, resolved, verified);
+            
+            if (rehashed != null) {
+                // The hash is part of the security stamp tokens carry, so it is stored before
+                // any are minted
+                user = userRepository.update(user.getId(), current -> storeRehash(current, checkedHash, rehashed))
+                        .orElse(user);
+            }
+            if (user.isBiometricEnabled()) {
+                return Result.biometricRequired(user);
+            }
+            
+            // Stored by the event queue; the copy in hand already shows this login
+            LoginEvent.Succeeded login = LoginEvent.Succeeded.password(user, LOGIN_IP);
+            login.applyTo(user);
+            loginEvents.publish(login);
+            long recorded = System.nanoTime();
+            record(Stage.RECORD, verified, recorded);
+            
+            TokenPair tokens = tokenProvider.generateTokenPair(user);
+            record(Stage.MINT, recorded, System.nanoTime());
+            return Result.success(user, tokens);
+        } finally {
+            record(Stage.TOTAL, start, System.nanoTime());
+        }
+    }
+    
+    /**
+     * Latency percentiles per stage, in microseconds
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        timings.forEach((stage, histogram) -> stats.put(stage.name().toLowerCase(Locale.ROOT), histogram.getStats()));
+        return stats;
+    }
+    
+    /**
+     * Start the stage timings over, e.g. before measuring a change
+     */
+    public void resetStats() {
+        timings.values().forEach(LatencyHistogram::reset);
+    }
+    
+    // Private helper methods
+    
+    private void record(Stage stage, long startNanos, long endNanos) {
+        timings.get(stage).record(endNanos - startNanos);
+    }
+    
+    private String unknownUserHash() {
+        String hash = unknownUserHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("userNotFoundPassword");
+            unknownUserHash = hash;
+        }
+        return hash;
+    }
+    
+    private static Map<Stage, LatencyHistogram> newTimings() {
+        Map<Stage, LatencyHistogram> timings = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            timings.put(stage, new LatencyHistogram());
+        }
+        return timings;
+    }
+    
+    // Skipped if the password changed since it was checked, so a concurrent reset is never undone
+    private static void storeRehash(User current, String checkedHash, String rehashed) {
+        if (Objects.equals(current.getPassword(), checkedHash)) {
+            current.setPassword(rehashed);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.auth.archetype.security;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.auth.archetype.util.TokenBucketTable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token-bucket rate limits on the password and biometric login endpoints, per client IP and
+ * per username, applied before the request reaches the user store or the password hasher.
+ * 
+ * The IP is checked first, from {@link HttpServletRequest#getRemoteAddr()}, so behind a proxy
+ * forwarded headers must be enabled for it to see clients. The username is then read from the
+ * JSON body, which is buffered and handed on unchanged. Requests over either limit, or from
+ * an IP that {@link CredentialStuffingDetector} has blocked, get 429 with a Retry-After
+ * header. Blocks apply even with the rate limits disabled.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+    
+    private static final Set<String> LIMITED_PATHS = Set.of("/auth/login", "/auth/biometric/verify");
+    
+    // Login bodies are tiny; anything past this is passed on without looking for the username
+    private static final int MAX_BUFFERED_BODY = 16 * 1024;
+    
+    private static final JsonFactory JSON = new JsonFactory();
+    
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.rate-limit.ip.per-minute:60}")
+    private int ipPerMinute;
+    
+    @Value("${app.rate-limit.ip.burst:20}")
+    private int ipBurst;
+    
+    @Value("${app.rate-limit.username.per-minute:10}")
+    private int usernamePerMinute;
+    
+    @Value("${app.rate-limit.username.burst:5}")
+    private int usernameBurst;
+    
+    @Value("${app.rate-limit.max-entries:262144}")
+    private int maxEntries;
+    
+    @Value("${app.rate-limit.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+    
+    private TokenBucketTable ipBuckets;
+    private TokenBucketTable usernameBuckets;
+    private ScheduledExecutorService sweeper;
+    
+    private final CredentialStuffingDetector stuffingDetector;
+    
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedByBlock = new LongAdder();
+    private final LongAdder rejectedByIp = new LongAdder();
+    private final LongAdder rejectedByUsername = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        ipBuckets = new TokenBucketTable(maxEntries, ipPerMinute, ipBurst, now);
+        usernameBuckets = new TokenBucketTable(maxEntries, usernamePerMinute, usernameBurst, now);
+        
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+        
+        log.info("Login rate limits: {}/min (burst {}) per IP, {}/min (burst {}) per username",
+                ipPerMinute, ipBurst, usernamePerMinute, usernameBurst);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdown();
+        }
+    }
+    
+    /**
+     * Counters and bucket table occupancy
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("rejectedByBlock", rejectedByBlock.sum());
+        if (!enabled) {
+            return stats;
+        }
+        
+        stats.put("allowed", allowed.sum());
+        stats.put("rejectedByIp", rejectedByIp.sum());
+        stats.put("rejectedByUsername", rejectedByUsername.sum());
+        stats.put("ipBuckets", ipBuckets.size());
+        stats.put("usernameBuckets", usernameBuckets.size());
+        stats.put("capacityPerTable", ipBuckets.capacity());
+        return stats;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !LIMITED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        long blockedFor = stuffingDetector.blockedForMillis(request.getRemoteAddr());
+        if (blockedFor > 0) {
+            rejectedByBlock.increment();
+            reject(request, response, blockedFor);
+            return;
+        }
+        
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        long ipWait = ipBuckets.tryAcquire(request.getRemoteAddr(), now);
+        if (ipWait > 0) {
+            rejectedByIp.increment();
+            log.debug("Rate limited login attempt from {}", request.getRemoteAddr());
+            reject(request, response, ipWait);
+            return;
+        }
+        
+        BufferedBodyRequest buffered = new BufferedBodyRequest(request);
+        String username = buffered.isComplete() ? readUsername(buffered.body()) : null;
+        if (username != null) {
+            long usernameWait = usernameBuckets.tryAcquire(username.strip().toLowerCase(Locale.ROOT), now);
+            if (usernameWait > 0) {
+                rejectedByUsername.increment();
+                log.debug("Rate limited login attempt for user: {}", username);
+                reject(request, response, usernameWait);
+                return;
+            }
+        }
+        
+        allowed.increment();
+        filterChain.doFilter(buffered, response);
+    }
+    
+    // Private helper methods
+    
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            int cleared = ipBuckets.sweep(now) + usernameBuckets.sweep(now);
+            log.debug("Cleared {} idle login rate limit buckets", cleared);
+        } catch (Exception e) {
+            log.error("Error sweeping login rate limit buckets", e);
+        }
+    }
+    
+    // Same shape as GlobalExceptionHandler's error responses, which filters cannot reach
+    private static void reject(HttpServletRequest request, HttpServletResponse response, long waitMillis) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf((waitMillis + 999) / 1000));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"status\":429,\"message\":\"Too many login attempts, please retry later\",\"path\":\"uri="
+                + request.getRequestURI().replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+    }
+    
+    /**
+     * Top-level "username" string of a JSON body, without binding the rest of it
+     * 
+     * @return the username, or null if the body is not a JSON object or has none
+     */
+    private static String readUsername(byte[] body) {
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("username".equals(field) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Reads up to {@link #MAX_BUFFERED_BODY} bytes of the body up front and replays them, with
+     * whatever is left, to the rest of the chain
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+        
+        private final byte[] body;
+        private final boolean complete;
+        private final ServletInputStream remainder;
+        
+        BufferedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            ServletInputStream in = request.getInputStream();
+            this.body = in.readNBytes(MAX_BUFFERED_BODY);
+            this.complete = body.length < MAX_BUFFERED_BODY;
+            this.remainder = in;
+        }
+        
+        byte[] body() {
+            return body;
+        }
+        
+        boolean isComplete() {
+            return complete;
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ReplayInputStream(body, complete ? null : remainder);
+        }
+        
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Serves the buffered prefix from memory and then the unread rest of the original stream.
+     * The prefix is always ready; once it is drained, readiness and non-blocking reads are the
+     * container's, so a {@link ReadListener} is handed to the original stream. A fully buffered
+     * body has nothing left to wait for, so its listener is driven straight away.
+     */
+    private static class ReplayInputStream extends ServletInputStream {
+        
+        private final ByteArrayInputStream head;
+        private final ServletInputStream tail;
+        
+        ReplayInputStream(byte[] body, ServletInputStream tail) {
+            this.head = new ByteArrayInputStream(body);
+            this.tail = tail;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = head.read();
+            if (b >= 0) {
+                return b;
+            }
+            return tail != null ? tail.read() : -1;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (head.available() > 0) {
+                return head.read(buffer, offset, length);
+            }
+            return tail != null ? tail.read(buffer, offset, length) : -1;
+        }
+        
+        @Override
+        public boolean isFinished() {
+            if (head.available() > 0) {
+                return false;
+            }
+            return tail == null || tail.isFinished();
+        }
+        
+        @Override
+        public boolean isReady() {
+            return head.available() > 0 || tail == null || tail.isReady();
+        }
+        
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            if (readListener == null) {
+                throw new NullPointerException("readListener");
+            }
+            if (tail != null) {
+                tail.setReadListener(readListener);
+                return;
+            }
+            try {
+                if (!isFinished()) {
+                    readListener.onDataAvailable();
+                }
+                if (isFinished()) {
+                    readListener.onAllDataRead();
+                }
+            } catch (IOException | RuntimeException e) {
+                readListener.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.auth.archetype.security;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the password hashing work factor at startup by timing the algorithm on this machine,
+ * so a hash costs about {@code app.password-hashing.target-millis} whatever the node size.
+ * 
+ * Hashes are stored with a {@code {bcrypt}} or {@code {argon2}} prefix. Unprefixed hashes
+ * from before are read as bcrypt. After a successful login the stored hash is replaced when
+ * it uses the other algorithm, has no prefix, or would cost less than half or more than
+ * twice the target here. The band keeps nodes of different speeds from rehashing the same
+ * password back and forth; each rehash changes the user's security stamp.
+ */
+@Component
+@Slf4j
+public class PasswordHashCalibrator {
+    
+    private static final String BCRYPT = "bcrypt";
+    private static final String ARGON2 = "argon2";
+    
+    // OWASP floors; the target only moves the cost above them
+    private static final int MIN_BCRYPT_STRENGTH = 10;
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final int MIN_ARGON2_ITERATIONS = 2;
+    private static final int MAX_ARGON2_ITERATIONS = 32;
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+    
+    // Cheap enough to repeat at startup, slow enough to time reliably
+    private static final int PROBE_BCRYPT_STRENGTH = 8;
+    private static final int PROBE_RUNS = 5;
+    private static final int WARMUP_RUNS = 2;
+    
+    private static final double REHASH_TOLERANCE = 2.0;
+    private static final String PROBE_PASSWORD = "calibration-probe-password";
+    
+    @Value("${app.password-hashing.algorithm:bcrypt}")
+    private String algorithm;
+    
+    @Value("${app.password-hashing.target-millis:100}")
+    private double targetMillis;
+    
+    @Value("${app.password-hashing.argon2.memory-kib:19456}")
+    private int argon2MemoryKib;
+    
+    @Value("${app.password-hashing.argon2.parallelism:1}")
+    private int argon2Parallelism;
+    
+    private PasswordEncoder encoder;
+    
+    // Estimated cost on this machine of one bcrypt strength-0 unit or one argon2 iteration
+    private double unitMillis;
+    private int workFactor;
+    private double measuredMillis;
+    private long calibrationMillis;
+    
+    private final LongAdder rehashes = new LongAdder();
+    
+    @PostConstruct
+    public void calibrate() {
+        long start = System.currentTimeMillis();
+        
+        if (BCRYPT.equals(algorithm)) {
+            unitMillis = time(new BCryptPasswordEncoder(PROBE_BCRYPT_STRENGTH)) / (1 << PROBE_BCRYPT_STRENGTH);
+            workFactor = chooseBcryptStrength();
+        } else if (ARGON2.equals(algorithm)) {
+            unitMillis = time(argon2(1));
+            workFactor = chooseArgon2Iterations();
+        } else {
+            throw new IllegalStateException("Unknown password hashing algorithm: " + algorithm);
+        }
+        
+        PasswordEncoder chosen = BCRYPT.equals(algorithm) ? new BCryptPasswordEncoder(workFactor) : argon2(workFactor);
+        measuredMillis = time(chosen);
+        // The full-cost timing is the better estimate for judging stored hashes later
+        unitMillis = measuredMillis / units(workFactor);
+        calibrationMillis = System.currentTimeMillis() - start;
+        
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(algorithm, Map.of(
+                BCRYPT, BCRYPT.equals(algorithm) ? chosen : new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH),
+                ARGON2, ARGON2.equals(algorithm) ? chosen : argon2(MIN_ARGON2_ITERATIONS)));
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        encoder = new CalibratedEncoder(delegating);
+        
+        log.info("Password hashing calibrated to {} with work factor {}: {} ms per hash (target {} ms, took {} ms)",
+                algorithm, workFactor, String.format("%.1f", measuredMillis), targetMillis, calibrationMillis);
+    }
+    
+    /**
+     * Encoder using the calibrated parameters, with the rehash rule above
+     */
+    public PasswordEncoder getEncoder() {
+        return encoder;
+    }
+    
+    /**
+     * Chosen parameters and the timings behind them
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("algorithm", algorithm);
+        if (BCRYPT.equals(algorithm)) {
+            stats.put("strength", workFactor);
+        } else {
+            stats.put("iterations", workFactor);
+            stats.put("memoryKib", argon2MemoryKib);
+            stats.put("parallelism", argon2Parallelism);
+        }
+        stats.put("targetMillis", targetMillis);
+        stats.put("measuredMillis", measuredMillis);
+        stats.put("calibrationMillis", calibrationMillis);
+        stats.put("rehashes", rehashes.sum());
+        return stats;
+    }
+    
+    // Private helper methods
+    
+    // Nearest to the target on a log scale, since each strength step doubles the cost
+    private int chooseBcryptStrength() {
+        int best = MIN_BCRYPT_STRENGTH;
+        for (int strength = MIN_BCRYPT_STRENGTH + 1; strength <= MAX_BCRYPT_STRENGTH; strength++) {
+            if (Math.abs(Math.log(units(strength) * unitMillis / targetMillis))
+                    < Math.abs(Math.log(units(best) * unitMillis / targetMillis))) {
+                best = strength;
+            }
+        }
+        return best;
+    }
+    
+    private int chooseArgon2Iterations() {
+        long iterations = Math.round(targetMillis / unitMillis);
+        return (int) Math.max(MIN_ARGON2_ITERATIONS, Math.min(MAX_ARGON2_ITERATIONS, iterations));
+    }
+    
+    // bcrypt cost is 2^strength rounds; argon2 cost is linear in iterations
+    private double units(int workFactor) {
+        return BCRYPT.equals(algorithm) ? (double) (1L << workFactor) : workFactor;
+    }
+    
+    private Argon2PasswordEncoder argon2(int iterations) {
+        return new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, argon2Parallelism,
+                argon2MemoryKib, iterations);
+    }
+    
+    // Median of a few runs after warm-up, in milliseconds
+    private static double time(PasswordEncoder probe) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            probe.encode(PROBE_PASSWORD);
+        }
+        
+        long[] runs = new long[PROBE_RUNS];
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            probe.encode(PROBE_PASSWORD);
+            runs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+        return runs[PROBE_RUNS / 2] / 1_000_000.0;
+    }
+    
+    private boolean needsRehash(String encodedPassword) {
+        String prefix = "{" + algorithm + "}";
+        if (encodedPassword == null || !encodedPassword.startsWith(prefix)) {
+            return true;
+        }
+        
+        int stored = storedWorkFactor(encodedPassword.substring(prefix.length()));
+        if (stored == workFactor) {
+            return false;
+        }
+        if (stored < 0 || stored < (BCRYPT.equals(algorithm) ? MIN_BCRYPT_STRENGTH : MIN_ARGON2_ITERATIONS)) {
+            return true;
+        }
+        
+        double estimatedMillis = units(stored) * unitMillis;
+        return estimatedMillis < targetMillis / REHASH_TOLERANCE || estimatedMillis > targetMillis * REHASH_TOLERANCE;
+    }
+    
+    /**
+     * Work factor of a hash without its prefix, or -1 if it cannot be read or was made with
+     * other argon2 memory or parallelism settings
+     */
+    private int storedWorkFactor(String hash) {
+        try {
+            if (BCRYPT.equals(algorithm)) {
+                // $2a$10$...
+                return Integer.parseInt(hash.substring(4, 6));
+            }
+            
+            // $argon2id$v=19$m=19456,t=2,p=1$salt$hash
+            String[] parameters = hash.split("\\$")[3].split(",");
+            int memory = Integer.parseInt(parameters[0].substring(2));
+            int iterations = Integer.parseInt(parameters[1].substring(2));
+            int parallelism = Integer.parseInt(parameters[2].substring(2));
+            return memory == argon2MemoryKib && parallelism == argon2Parallelism ? iterations : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+    
+    private class CalibratedEncoder implements PasswordEncoder {
+        
+        private final PasswordEncoder delegate;
+        
+        CalibratedEncoder(PasswordEncoder delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return delegate.encode(rawPassword);
+        }
+        
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        
+        // Only asked after a successful match, when Spring Security would store a new hash
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            boolean rehash = needsRehash(encodedPassword);
+            if (rehash) {
+                rehashes.increment();
+            }
+            return rehash;
+        }
+    }
+}
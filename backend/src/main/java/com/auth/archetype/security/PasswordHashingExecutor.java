@@ -0,0 +1,180 @@
+package com.auth.archetype.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.exception.ServiceOverloadedException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dedicated pool for password hashing and verification, so a burst of logins cannot occupy
+ * every request thread with bcrypt.
+ * 
+ * The pool has one thread per core and a bounded queue. A request that finds the queue full,
+ * or whose hash is not done within the configured wait, is turned away with
+ * {@link ServiceOverloadedException} instead of piling up. Callers still block for their own
+ * hash, but at most threads + queue capacity request threads are ever tied up this way.
+ */
+@Component
+@Slf4j
+public class PasswordHashingExecutor {
+    
+    private static final long MIN_RETRY_AFTER_SECONDS = 1;
+    private static final long MAX_RETRY_AFTER_SECONDS = 30;
+    
+    @Value("${app.password-hashing.threads:0}")
+    private int configuredThreads;
+    
+    @Value("${app.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+    
+    @Value("${app.password-hashing.max-wait-ms:5000}")
+    private long maxWaitMillis;
+    
+    private ThreadPoolExecutor executor;
+    private int threads;
+    
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        
+        log.info("Password hashing pool started with {} threads and a queue of {}", threads, queueCapacity);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Run a hashing task on the pool and wait for its result
+     * 
+     * @param task password encode or match
+     * @return the task's result; its runtime exceptions propagate unchanged
+     * @throws ServiceOverloadedException if the queue is full or the result is not ready within the wait limit
+     */
+    public <T> T execute(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                recordQueueWait(startedAt - submittedAt);
+                try {
+                    return task.get();
+                } finally {
+                    totalHashNanos.add(System.nanoTime() - startedAt);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw overloaded();
+        }
+        
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Dropped from the queue if it has not started; a running hash finishes unobserved
+            future.cancel(false);
+            timedOut.increment();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+    
+    /**
+     * Pool and queue-wait statistics
+     */
+    public Map<String, Object> getStats() {
+        long completedCount = completed.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("completed", completedCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("avgQueueWaitMillis", completedCount > 0 ? nanosToMillis(totalQueueWaitNanos.sum() / completedCount) : 0.0);
+        stats.put("maxQueueWaitMillis", nanosToMillis(maxQueueWaitNanos.get()));
+        stats.put("avgHashMillis", completedCount > 0 ? nanosToMillis(totalHashNanos.sum() / completedCount) : 0.0);
+        return stats;
+    }
+    
+    // Private helper methods
+    
+    private void recordQueueWait(long waitNanos) {
+        totalQueueWaitNanos.add(waitNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+    
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Too many authentication requests, please retry later",
+                estimateRetryAfterSeconds());
+    }
+    
+    // Time for the current backlog to drain at the average hash time observed so far
+    private long estimateRetryAfterSeconds() {
+        long completedCount = completed.sum();
+        if (completedCount == 0) {
+            return MIN_RETRY_AFTER_SECONDS;
+        }
+        
+        long avgHashNanos = totalHashNanos.sum() / completedCount;
+        long backlog = executor.getQueue().size() + executor.getActiveCount();
+        long drainSeconds = TimeUnit.NANOSECONDS.toSeconds(backlog * avgHashNanos / threads) + 1;
+        return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, drainSeconds));
+    }
+    
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
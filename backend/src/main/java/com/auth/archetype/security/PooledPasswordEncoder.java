@@ -0,0 +1,32 @@
+package com.auth.archetype.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Runs the expensive calls of another encoder on the {@link PasswordHashingExecutor}, so
+ * registration, login and password resets share one bounded pool without knowing about it.
+ */
+@RequiredArgsConstructor
+public class PooledPasswordEncoder implements PasswordEncoder {
+    
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> delegate.encode(rawPassword));
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+    
+    // Only parses the stored hash, nothing worth queueing for
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,447 @@
+package com.auth.archetype.security;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.util.FileStorageUtil;
+import com.auth.archetype.util.LongLongHashMap;
+import com.auth.archetype.util.RecordJournal;
+import com.auth.archetype.util.TimingWheel;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rotating refresh-token families with reuse detection.
+ * 
+ * Every login starts a family, and each refresh token carries its family ID and generation.
+ * Refreshing moves the family to the next generation. Presenting an older generation means
+ * the token was copied, so the whole family is revoked, along with the access tokens that
+ * name it.
+ * 
+ * A family is one entry in a primitive long-to-long map: the ID maps to its generation and
+ * expiry packed into a single long. The maps are split into stripes, each guarded by a
+ * {@link StampedLock}, so a refresh is a probe and a journal append under one stripe's write
+ * lock. {@link #isActive}, which runs for every authenticated request, is an optimistic read
+ * that takes no lock unless a writer got in the way. Changes go to a CRC-framed journal that
+ * is compacted into a binary snapshot. Families expire through a timing wheel, and expiry is
+ * not journaled because loading drops anything past its deadline.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenStore {
+    
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    
+    private static final int STRIPES = 64;
+    private static final long WHEEL_TICK_MILLIS = 60_000;
+    
+    // IDs stay below 2^53 so they survive JSON consumers that read numbers as doubles
+    private static final long MAX_FAMILY_ID = 1L << 53;
+    
+    private final FileStorageUtil fileStorageUtil;
+    
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpiration;
+    
+    @Value("${jwt.refresh.expected-families:100000}")
+    private int expectedFamilies;
+    
+    @Value("${jwt.refresh.compact-threshold-bytes:8388608}")
+    private long compactThresholdBytes;
+    
+    private LongLongHashMap[] stripes;
+    private StampedLock[] locks;
+    private RecordJournal journal;
+    private TimingWheel wheel;
+    private ScheduledExecutorService scheduler;
+    
+    public enum Rotation {
+        ROTATED,
+        REUSED,
+        UNKNOWN
+    }
+    
+    @PostConstruct
+    public void init() {
+        stripes = new LongLongHashMap[STRIPES];
+        locks = new StampedLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongLongHashMap(expectedFamilies / STRIPES);
+            locks[i] = new StampedLock();
+        }
+        
+        long now = System.currentTimeMillis();
+        int slots = (int) Math.min(1 << 16, refreshExpiration / WHEEL_TICK_MILLIS + 1);
+        wheel = new TimingWheel(WHEEL_TICK_MILLIS, slots, now);
+        journal = new RecordJournal(fileStorageUtil, fileStorageUtil.getRefreshFamiliesFilePath() + ".journal",
+                "refresh token journal");
+        
+        try {
+            loadSnapshot();
+            journal.replay(this::applyJournalRecord);
+            journal.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load refresh token families", e);
+        }
+        
+        int live = scheduleLoadedFamilies(now);
+        log.info("Loaded {} refresh token families", live);
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-token-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireFamilies, WHEEL_TICK_MILLIS, WHEEL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compactJournal, 5, 5, TimeUnit.MINUTES);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    /**
+     * Start a new family at generation 0
+     * 
+     * @return the family ID
+     */
+    public long startFamily() {
+        long expiresAt = System.currentTimeMillis() + refreshExpiration;
+        long state = pack(0, expiresAt);
+        long familyId;
+        
+        while (true) {
+            familyId = ThreadLocalRandom.current().nextLong(1, MAX_FAMILY_ID);
+            LongLongHashMap stripe = stripe(familyId);
+            StampedLock lock = lock(familyId);
+            long stamp = lock.writeLock();
+            try {
+                if (!stripe.containsKey(familyId)) {
+                    stripe.put(familyId, state);
+                    append(OP_PUT, familyId, state);
+                    break;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        
+        syncJournal();
+        synchronized (wheel) {
+            wheel.schedule(familyId, expiresAt);
+        }
+        return familyId;
+    }
+    
+    /**
+     * Move a family to its next generation if the presented generation is the current one.
+     * A stale generation revokes the family.
+     * 
+     * @param familyId family ID claim of the refresh token
+     * @param generation generation claim of the refresh token
+     * @return ROTATED if the caller may issue generation + 1, REUSED if the token was replayed
+     *         and the family is now revoked, UNKNOWN if the family expired or was revoked
+     */
+    public Rotation rotate(long familyId, int generation) {
+        long now = System.currentTimeMillis();
+        LongLongHashMap stripe = stripe(familyId);
+        StampedLock lock = lock(familyId);
+        Rotation result;
+        
+        long stamp = lock.writeLock();
+        try {
+            long state = stripe.get(familyId, 0);
+            if (state == 0 || expiresAt(state) <= now) {
+                return Rotation.UNKNOWN;
+            }
+            
+            if (generation(state) != generation) {
+                stripe.remove(familyId);
+                append(OP_REMOVE, familyId, 0);
+                result = Rotation.REUSED;
+            } else {
+                // The family's lifetime slides with each refresh; the wheel re-checks it lazily
+                long next = pack(generation + 1, now + refreshExpiration);
+                stripe.put(familyId, next);
+                append(OP_PUT, familyId, next);
+                result = Rotation.ROTATED;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        
+        syncJournal();
+        return result;
+    }
+    
+    /**
+     * Lock-free unless a writer holds the family's stripe at the same moment, in which case
+     * the lookup is repeated under the read lock
+     * 
+     * @return true if the family exists and has not expired
+     */
+    public boolean isActive(long familyId) {
+        LongLongHashMap stripe = stripe(familyId);
+        StampedLock lock = lock(familyId);
+        long state;
+        
+        long stamp = lock.tryOptimisticRead();
+        try {
+            state = stripe.get(familyId, 0);
+        } catch (RuntimeException e) {
+            // A racing resize can be seen half done; validation fails below and the read is retried
+            state = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                state = stripe.get(familyId, 0);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return state != 0 && expiresAt(state) > System.currentTimeMillis();
+    }
+    
+    /**
+     * End a family, e.g. on logout
+     */
+    public void revokeFamily(long familyId) {
+        LongLongHashMap stripe = stripe(familyId);
+        StampedLock lock = lock(familyId);
+        long stamp = lock.writeLock();
+        try {
+            if (!stripe.remove(familyId)) {
+                return;
+            }
+            append(OP_REMOVE, familyId, 0);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        syncJournal();
+    }
+    
+    /**
+     * @return number of families held, including expired ones not yet swept
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            long stamp = locks[i].readLock();
+            try {
+                size += stripes[i].size();
+            } finally {
+                locks[i].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+    
+    // Private helper methods
+    
+    // Generation in the high half, expiry in epoch seconds in the low half
+    private static long pack(int generation, long expiresAtMillis) {
+        return (long) generation << 32 | (expiresAtMillis / 1000) & 0xffffffffL;
+    }
+    
+    private static int generation(long state) {
+        return (int) (state >>> 32);
+    }
+    
+    private static long expiresAt(long state) {
+        return (state & 0xffffffffL) * 1000;
+    }
+    
+    private static int stripeIndex(long familyId) {
+        return (int) (familyId ^ familyId >>> 32) & (STRIPES - 1);
+    }
+    
+    private LongLongHashMap stripe(long familyId) {
+        return stripes[stripeIndex(familyId)];
+    }
+    
+    private StampedLock lock(long familyId) {
+        return locks[stripeIndex(familyId)];
+    }
+    
+    // Called under the family's stripe write lock so the journal sees each family's changes in order
+    private void append(byte op, long familyId, long state) {
+        try {
+            ByteBuffer payload = ByteBuffer.allocate(op == OP_PUT ? 16 : 8).putLong(familyId);
+            if (op == OP_PUT) {
+                payload.putLong(state);
+            }
+            journal.append(op, payload.array());
+        } catch (IOException e) {
+            log.error("Error appending to refresh token journal", e);
+        }
+    }
+    
+    // Outside the stripe lock so concurrent refreshes can share a group-commit fsync
+    private void syncJournal() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            log.error("Error syncing refresh token journal", e);
+        }
+    }
+    
+    private void applyJournalRecord(byte op, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long familyId = buffer.getLong();
+        
+        if (op == OP_PUT) {
+            stripe(familyId).put(familyId, buffer.getLong());
+        } else if (op == OP_REMOVE) {
+            stripe(familyId).remove(familyId);
+        } else {
+            log.warn("Skipping unknown refresh token journal record type {}", op);
+        }
+    }
+    
+    private int scheduleLoadedFamilies(long now) {
+        int live = 0;
+        for (LongLongHashMap stripe : stripes) {
+            long[] expired = new long[stripe.size()];
+            int[] expiredCount = new int[1];
+            
+            stripe.forEach((familyId, state) -> {
+                if (expiresAt(state) <= now) {
+                    expired[expiredCount[0]++] = familyId;
+                } else {
+                    wheel.schedule(familyId, expiresAt(state));
+                }
+            });
+            
+            for (int i = 0; i < expiredCount[0]; i++) {
+                stripe.remove(expired[i]);
+            }
+            live += stripe.size();
+        }
+        return live;
+    }
+    
+    private void expireFamilies() {
+        try {
+            long now = System.currentTimeMillis();
+            int[] expired = new int[1];
+            
+            synchronized (wheel) {
+                wheel.advance(now, familyId -> {
+                    LongLongHashMap stripe = stripe(familyId);
+                    StampedLock lock = lock(familyId);
+                    long stamp = lock.writeLock();
+                    try {
+                        long state = stripe.get(familyId, 0);
+                        if (state == 0) {
+                            return;
+                        }
+                        if (expiresAt(state) <= now) {
+                            stripe.remove(familyId);
+                            expired[0]++;
+                        } else {
+                            wheel.schedule(familyId, expiresAt(state));
+                        }
+                    } finally {
+                        lock.unlockWrite(stamp);
+                    }
+                });
+            }
+            
+            if (expired[0] > 0) {
+                log.debug("Expired {} refresh token families", expired[0]);
+            }
+        } catch (Exception e) {
+            log.error("Error expiring refresh token families", e);
+        }
+    }
+    
+    /**
+     * Fold the journal into a new snapshot. Refreshes only wait for the log rotation and for
+     * their own stripe to be copied; anything after the rotation is replayed over the snapshot.
+     */
+    private void compactJournal() {
+        try {
+            if (journal.size() < compactThresholdBytes || !journal.rotate()) {
+                return;
+            }
+            
+            long now = System.currentTimeMillis();
+            // The rotated journal is only dropped once the snapshot that replaces it is on disk
+            fileStorageUtil.writeFileDurably(fileStorageUtil.getRefreshFamiliesFilePath(), out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                for (int s = 0; s < STRIPES; s++) {
+                    LongLongHashMap stripe = stripes[s];
+                    long[] entries;
+                    int[] count = new int[1];
+                    long stamp = locks[s].readLock();
+                    try {
+                        entries = new long[stripe.size() * 2];
+                        stripe.forEach((familyId, state) -> {
+                            entries[count[0]++] = familyId;
+                            entries[count[0]++] = state;
+                        });
+                    } finally {
+                        locks[s].unlockRead(stamp);
+                    }
+                    
+                    for (int i = 0; i < count[0]; i += 2) {
+                        if (expiresAt(entries[i + 1]) > now) {
+                            data.writeLong(entries[i]);
+                            data.writeLong(entries[i + 1]);
+                        }
+                    }
+                }
+                // Family ID 0 never occurs and marks the end
+                data.writeLong(0);
+                data.flush();
+            });
+            journal.discardRotated();
+            log.info("Compacted refresh token journal into a new snapshot");
+        } catch (Exception e) {
+            log.error("Error compacting refresh token journal", e);
+        }
+    }
+    
+    private void loadSnapshot() throws IOException {
+        try (InputStream in = fileStorageUtil.openFile(fileStorageUtil.getRefreshFamiliesFilePath())) {
+            if (in == null) {
+                return;
+            }
+            
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            long familyId;
+            while ((familyId = data.readLong()) != 0) {
+                stripe(familyId).put(familyId, data.readLong());
+            }
+        }
+    }
+}
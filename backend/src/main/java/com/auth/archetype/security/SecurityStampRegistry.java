@@ -0,0 +1,102 @@
+package com.auth.archetype.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.repository.UserChangedEvent;
+import com.auth.archetype.repository.UserRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory table of each user's current security stamp: a 32-bit hash of the username,
+ * roles, lockout flag and password hash. Tokens carry the stamp they were issued with, so a
+ * token whose stamp no longer matches was issued before a role change, lockout, password
+ * change or deletion and must not be trusted without looking at the store.
+ * 
+ * The table follows {@link UserChangedEvent}s and only falls back to the store the first time
+ * it sees a user id. Events carry the user's version, so a late event never overwrites a
+ * newer entry.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SecurityStampRegistry {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private final UserRepository userRepository;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    private record Entry(int stamp, long version, boolean deleted) {
+        
+        // Deletion is final; ids are never reused
+        static final Entry DELETED = new Entry(0, Long.MAX_VALUE, true);
+        
+        static Entry of(User user) {
+            return new Entry(stampOf(user), user.getVersion(), false);
+        }
+    }
+    
+    /**
+     * Compute the security stamp of a user as it is now
+     */
+    public static int stampOf(User user) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, user.getUsername());
+        List<String> roles = user.getRoles();
+        if (roles != null) {
+            for (String role : roles) {
+                hash = mix(hash, role);
+            }
+        }
+        hash = mix(hash, user.isAccountLocked() ? "L" : "U");
+        hash = mix(hash, user.getPassword());
+        return (int) (hash ^ (hash >>> 32));
+    }
+    
+    /**
+     * Check a token's stamp against the user's current one
+     * 
+     * @param userId id claim of the token
+     * @param stamp stamp claim of the token
+     * @return false if the user changed since the token was issued or no longer exists
+     */
+    public boolean isCurrent(String userId, int stamp) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            entry = record(userId, userRepository.findById(userId).map(Entry::of).orElse(Entry.DELETED));
+        }
+        return !entry.deleted() && entry.stamp() == stamp;
+    }
+    
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        User user = event.user();
+        record(user.getId(), event.deleted() ? Entry.DELETED : Entry.of(user));
+    }
+    
+    // Private helper methods
+    
+    private Entry record(String userId, Entry entry) {
+        return entries.merge(userId, entry, (current, update) -> update.version() >= current.version() ? update : current);
+    }
+    
+    private static long mix(long hash, String value) {
+        if (value != null) {
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+            }
+        }
+        // Field separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,333 @@
+package com.auth.archetype.security;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.util.FileStorageUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rotating set of ES256 signing keys, used when {@code jwt.signing.algorithm=ES256}.
+ * 
+ * At any time there is one current key that signs new tokens, one next key that is already
+ * published but not yet used, and any retired keys whose tokens may still be live. Publishing
+ * the next key a full rotation interval ahead lets downstream services pick it up from their
+ * cached JWKS before the first token signed with it arrives. A retired key stays published
+ * until the longest-lived token it signed has expired.
+ * 
+ * The whole set is one immutable value swapped on rotation, and each entry carries its
+ * decoded public key, so verification is a map lookup by {@code kid} and rotating never makes
+ * a request wait for key generation or parsing. Keys are persisted, owner-readable only and
+ * synced to disk, so tokens survive a restart.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SigningKeyRing {
+    
+    private static final String CURVE = "secp256r1";
+    private static final Jwks EMPTY_JWKS = new Jwks("{\"keys\":[]}".getBytes(StandardCharsets.UTF_8), "\"empty\"");
+    
+    private final FileStorageUtil fileStorageUtil;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Value("${jwt.signing.algorithm:HS512}")
+    private String algorithm;
+    
+    @Value("${jwt.signing.rotation-interval-hours:24}")
+    private long rotationIntervalHours;
+    
+    // How long downstream services may cache the key set; keep it below the rotation interval
+    @Value("${jwt.jwks.max-age-seconds:3600}")
+    private long jwksMaxAgeSeconds;
+    
+    // Longest lifetime of any token, and so how long a retired key must stay published
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpiration;
+    
+    private volatile KeySet keys;
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * A P-256 signing key. Retired keys keep only their public half.
+     */
+    public record SigningKey(String kid, PrivateKey privateKey, ECPublicKey publicKey, long activatedAt, long retiresAt) {
+    }
+    
+    /**
+     * Pre-rendered JWKS document with its entity tag
+     */
+    public record Jwks(byte[] json, String etag) {
+    }
+    
+    private record KeySet(SigningKey current, SigningKey next, List<SigningKey> retired,
+            Map<String, Key> verifiers, Jwks jwks) {
+    }
+    
+    /**
+     * On-disk form of a key; the private key is null for retired keys
+     */
+    private record StoredKey(String kid, String privateKey, String publicKey, long activatedAt, long retiresAt) {
+    }
+    
+    private record StoredKeySet(StoredKey current, StoredKey next, List<StoredKey> retired) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        
+        if (jwksMaxAgeSeconds >= TimeUnit.HOURS.toSeconds(rotationIntervalHours)) {
+            log.warn("JWKS max-age of {} s is not below the key rotation interval; "
+                    + "downstream services may see tokens signed with a key they have not fetched yet", jwksMaxAgeSeconds);
+        }
+        
+        KeySet loaded = load();
+        if (loaded == null) {
+            loaded = newKeySet(generate(System.currentTimeMillis()), generate(0), List.of());
+            persist(loaded);
+            log.info("Generated token signing key {}", loaded.current().kid());
+        }
+        keys = loaded;
+        rotateIfDue();
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "signing-key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rotateIfDue, 1, 1, TimeUnit.MINUTES);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    /**
+     * @return true if tokens are signed with the key ring rather than the shared secret
+     */
+    public boolean isEnabled() {
+        return "ES256".equalsIgnoreCase(algorithm);
+    }
+    
+    /**
+     * @return the key new tokens are signed with
+     */
+    public SigningKey current() {
+        return keys.current();
+    }
+    
+    /**
+     * Look up the public key a token names in its {@code kid} header
+     * 
+     * @param kid key ID
+     * @return the key, or null if it is unknown or no longer published
+     */
+    public Key verificationKey(String kid) {
+        KeySet set = keys;
+        return set == null ? null : set.verifiers().get(kid);
+    }
+    
+    /**
+     * @return the public keys as a JWKS document; empty when signing with the shared secret
+     */
+    public Jwks jwks() {
+        KeySet set = keys;
+        return set == null ? EMPTY_JWKS : set.jwks();
+    }
+    
+    public long getJwksMaxAgeSeconds() {
+        return jwksMaxAgeSeconds;
+    }
+    
+    // Private helper methods
+    
+    private synchronized void rotateIfDue() {
+        try {
+            long now = System.currentTimeMillis();
+            KeySet set = keys;
+            
+            boolean due = set.current().activatedAt() + TimeUnit.HOURS.toMillis(rotationIntervalHours) <= now;
+            List<SigningKey> retired = new ArrayList<>(set.retired().stream()
+                    .filter(key -> key.retiresAt() > now)
+                    .toList());
+            
+            if (!due && retired.size() == set.retired().size()) {
+                return;
+            }
+            
+            KeySet updated;
+            if (due) {
+                SigningKey previous = set.current();
+                retired.add(new SigningKey(previous.kid(), null, previous.publicKey(),
+                        previous.activatedAt(), now + refreshExpiration));
+                
+                SigningKey next = set.next();
+                updated = newKeySet(new SigningKey(next.kid(), next.privateKey(), next.publicKey(), now, 0),
+                        generate(0), retired);
+            } else {
+                updated = newKeySet(set.current(), set.next(), retired);
+            }
+            
+            // Persist before signing with the new key so a restart never forgets it
+            persist(updated);
+            keys = updated;
+            
+            if (due) {
+                log.info("Rotated token signing key from {} to {}", set.current().kid(), updated.current().kid());
+            }
+        } catch (Exception e) {
+            log.error("Error rotating token signing keys", e);
+        }
+    }
+    
+    private KeySet newKeySet(SigningKey current, SigningKey next, List<SigningKey> retired) {
+        List<SigningKey> published = new ArrayList<>();
+        published.add(current);
+        published.add(next);
+        published.addAll(retired);
+        
+        Map<String, Key> verifiers = new HashMap<>();
+        List<Map<String, String>> jwkList = new ArrayList<>();
+        for (SigningKey key : published) {
+            verifiers.put(key.kid(), key.publicKey());
+            jwkList.add(toJwk(key));
+        }
+        
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Map.of("keys", jwkList));
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(json)) + "\"";
+            return new KeySet(current, next, List.copyOf(retired), Map.copyOf(verifiers), new Jwks(json, etag));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not render JWKS", e);
+        }
+    }
+    
+    private static SigningKey generate(long activatedAt) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair pair = generator.generateKeyPair();
+            ECPublicKey publicKey = (ECPublicKey) pair.getPublic();
+            return new SigningKey(thumbprint(publicKey), pair.getPrivate(), publicKey, activatedAt, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate signing key", e);
+        }
+    }
+    
+    private static Map<String, String> toJwk(SigningKey key) {
+        Map<String, String> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", key.kid());
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("x", coordinate(key.publicKey().getW().getAffineX()));
+        jwk.put("y", coordinate(key.publicKey().getW().getAffineY()));
+        return jwk;
+    }
+    
+    // RFC 7638 JWK thumbprint, so the kid is stable and derived from the key itself
+    private static String thumbprint(ECPublicKey key) throws GeneralSecurityException {
+        String canonical = "{\"crv\":\"P-256\",\"kty\":\"EC\",\"x\":\"" + coordinate(key.getW().getAffineX())
+                + "\",\"y\":\"" + coordinate(key.getW().getAffineY()) + "\"}";
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+    
+    // Unsigned, fixed 32-byte big-endian encoding required by JWK
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+    
+    private void persist(KeySet set) {
+        StoredKeySet stored = new StoredKeySet(
+                toStored(set.current()),
+                toStored(set.next()),
+                set.retired().stream().map(SigningKeyRing::toStored).toList());
+        try {
+            fileStorageUtil.writeSecretFile(fileStorageUtil.getSigningKeysFilePath(), objectMapper.writeValueAsBytes(stored));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save signing keys", e);
+        }
+    }
+    
+    private KeySet load() {
+        try {
+            byte[] data = fileStorageUtil.readFile(fileStorageUtil.getSigningKeysFilePath());
+            if (data == null) {
+                return null;
+            }
+            
+            StoredKeySet stored = objectMapper.readValue(data, StoredKeySet.class);
+            List<SigningKey> retired = new ArrayList<>();
+            for (StoredKey key : stored.retired()) {
+                retired.add(fromStored(key));
+            }
+            KeySet set = newKeySet(fromStored(stored.current()), fromStored(stored.next()), retired);
+            log.info("Loaded token signing key {} with {} retired keys", set.current().kid(), retired.size());
+            return set;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Could not load signing keys", e);
+        }
+    }
+    
+    private static StoredKey toStored(SigningKey key) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return new StoredKey(
+                key.kid(),
+                key.privateKey() != null ? encoder.encodeToString(key.privateKey().getEncoded()) : null,
+                encoder.encodeToString(key.publicKey().getEncoded()),
+                key.activatedAt(),
+                key.retiresAt());
+    }
+    
+    private static SigningKey fromStored(StoredKey key) throws GeneralSecurityException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        KeyFactory factory = KeyFactory.getInstance("EC");
+        PrivateKey privateKey = key.privateKey() != null
+                ? factory.generatePrivate(new PKCS8EncodedKeySpec(decoder.decode(key.privateKey())))
+                : null;
+        ECPublicKey publicKey = (ECPublicKey) factory.generatePublic(new X509EncodedKeySpec(decoder.decode(key.publicKey())));
+        return new SigningKey(key.kid(), privateKey, publicKey, key.activatedAt(), key.retiresAt());
+    }
+}
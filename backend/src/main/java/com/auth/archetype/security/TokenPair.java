@@ -0,0 +1,7 @@
+package com.auth.archetype.security;
+
+/**
+ * Access and refresh token issued together for one session
+ */
+public record TokenPair(String accessToken, String refreshToken) {
+}
@@ -0,0 +1,306 @@
+package com.auth.archetype.security;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.util.BloomFilter;
+import com.auth.archetype.util.FileStorageUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Denylist of tokens that were logged out before they expired.
+ * 
+ * Single tokens are revoked by their ID ({@code jti}) until their own expiry. All tokens of
+ * a user are revoked at once by raising the user's revocation epoch: tokens carry the epoch
+ * that was current when they were minted ({@code rev} claim), and any token carrying an
+ * older one is rejected. The comparison is exact, so a token minted right after a
+ * revocation, even within the same second, stays valid. Tokens minted before the claim
+ * existed fall back to their issue time. Both key sets sit behind Bloom filters, so the
+ * common case of a token that was never revoked is answered from a few bit reads without
+ * touching the maps. Tokens naming a session family are also rejected once
+ * {@link RefreshTokenStore} has ended that family. Checks take no locks: the maps are
+ * concurrent, the filters set bits atomically, and the family lookup is an optimistic read
+ * that only locks when it races a write to the same stripe. Writers synchronize on the
+ * store.
+ * 
+ * Expired entries are purged periodically and the filters rebuilt, which keeps memory bounded
+ * by the number of tokens revoked within one token lifetime. The store is persisted to a small
+ * JSON file so logouts survive a restart.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationStore {
+    
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    
+    private final FileStorageUtil fileStorageUtil;
+    private final VerifiedTokenCache tokenCache;
+    private final RefreshTokenStore refreshTokens;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    // Longest lifetime of any token, after which a user's epoch no longer rejects anything
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpiration;
+    
+    @Value("${jwt.revocation.expected-entries:10000}")
+    private int expectedEntries;
+    
+    @Value("${jwt.revocation.purge-interval-seconds:60}")
+    private long purgeIntervalSeconds;
+    
+    // Token ID -> expiry in epoch millis
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    
+    // User ID -> revocation epoch: the epoch millis of the last revoke-all, kept strictly
+    // increasing per user
+    private final Map<String, Long> userEpochs = new ConcurrentHashMap<>();
+    
+    private volatile BloomFilter tokenFilter;
+    private volatile BloomFilter userFilter;
+    
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * On-disk form of the store. Watermarks in epoch seconds are only read, from files written
+     * before revocation epochs replaced them.
+     */
+    private record Snapshot(Map<String, Long> tokens, Map<String, Long> epochs, Map<String, Long> watermarks) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        load();
+        synchronized (this) {
+            rebuildFilters();
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-revocation-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeExpired,
+                purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        persist();
+    }
+    
+    /**
+     * Check whether a verified token has been revoked
+     * 
+     * @param token verified claims
+     * @return true if the token was revoked by ID or by its user's revocation epoch, or its
+     *         session's refresh-token family has ended
+     */
+    public boolean isRevoked(VerifiedToken token) {
+        if (token.familyId() != null && !refreshTokens.isActive(token.familyId())) {
+            return true;
+        }
+        
+        String tokenId = token.tokenId();
+        if (tokenId != null && tokenFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        
+        String userId = token.userId();
+        if (userId != null && userFilter.mightContain(userId)) {
+            Long epoch = userEpochs.get(userId);
+            if (epoch == null) {
+                return false;
+            }
+            if (token.revocationEpoch() != null) {
+                return token.revocationEpoch() < epoch;
+            }
+            return token.issuedAt() != null && token.issuedAt().toEpochMilli() <= epoch;
+        }
+        return false;
+    }
+    
+    /**
+     * @return the user's current revocation epoch, for the {@code rev} claim of a new token;
+     *         0 if the user's tokens were never revoked as a whole
+     */
+    public long revocationEpoch(String userId) {
+        if (userId == null || !userFilter.mightContain(userId)) {
+            return 0;
+        }
+        return userEpochs.getOrDefault(userId, 0L);
+    }
+    
+    /**
+     * Revoke a single token until it expires. Tokens issued without an ID can only be
+     * revoked together with every other token of their user.
+     * 
+     * @param token verified claims of the token to revoke
+     */
+    public void revoke(VerifiedToken token) {
+        if (token.tokenId() == null) {
+            if (token.userId() != null) {
+                revokeAllForUser(token.userId());
+            }
+            return;
+        }
+        
+        long expiresAt = token.expiresAt() != null
+                ? token.expiresAt().toEpochMilli()
+                : System.currentTimeMillis() + refreshExpiration;
+        
+        synchronized (this) {
+            if (revokedTokens.put(token.tokenId(), expiresAt) == null) {
+                if (revokedTokens.size() > tokenFilter.expectedInsertions()) {
+                    rebuildFilters();
+                } else {
+                    tokenFilter.add(token.tokenId());
+                }
+            }
+        }
+        tokenCache.invalidateIf(cached -> token.tokenId().equals(cached.tokenId()));
+        schedulePersist();
+    }
+    
+    /**
+     * Revoke every token minted for a user so far. Tokens minted afterwards carry the new
+     * epoch and are not affected.
+     * 
+     * @param userId the user's ID
+     */
+    public void revokeAllForUser(String userId) {
+        long now = System.currentTimeMillis();
+        
+        synchronized (this) {
+            Long previous = userEpochs.put(userId, now);
+            if (previous != null && previous >= now) {
+                // Two revocations within the same millisecond must still move the epoch
+                userEpochs.put(userId, previous + 1);
+            }
+            if (previous == null) {
+                if (userEpochs.size() > userFilter.expectedInsertions()) {
+                    rebuildFilters();
+                } else {
+                    userFilter.add(userId);
+                }
+            }
+        }
+        tokenCache.invalidateIf(cached -> userId.equals(cached.userId()));
+        schedulePersist();
+    }
+    
+    /**
+     * @return number of revoked token IDs and user revocation epochs currently held
+     */
+    public Map<String, Integer> getStats() {
+        return Map.of(
+                "revokedTokens", revokedTokens.size(),
+                "userEpochs", userEpochs.size());
+    }
+    
+    // Private helper methods
+    
+    private synchronized void purgeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            long epochCutoff = now - refreshExpiration;
+            
+            boolean removed = revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+            removed |= userEpochs.values().removeIf(epoch -> epoch < epochCutoff);
+            
+            if (removed) {
+                rebuildFilters();
+                dirty.set(true);
+            }
+            persist();
+        } catch (Exception e) {
+            log.error("Error purging token revocations", e);
+        }
+    }
+    
+    // Must be called while synchronized on the store; readers switch to the new filters atomically
+    private void rebuildFilters() {
+        BloomFilter tokens = new BloomFilter(Math.max(expectedEntries, revokedTokens.size() * 2), FALSE_POSITIVE_RATE);
+        revokedTokens.keySet().forEach(tokens::add);
+        
+        BloomFilter users = new BloomFilter(Math.max(expectedEntries, userEpochs.size() * 2), FALSE_POSITIVE_RATE);
+        userEpochs.keySet().forEach(users::add);
+        
+        tokenFilter = tokens;
+        userFilter = users;
+    }
+    
+    private void schedulePersist() {
+        dirty.set(true);
+        if (scheduler != null && persistScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::persist);
+        }
+    }
+    
+    private void persist() {
+        persistScheduled.set(false);
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        
+        try {
+            Snapshot snapshot = new Snapshot(Map.copyOf(revokedTokens), Map.copyOf(userEpochs), null);
+            fileStorageUtil.writeFile(fileStorageUtil.getRevocationsFilePath(), objectMapper.writeValueAsBytes(snapshot));
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Error saving token revocations", e);
+        }
+    }
+    
+    private void load() {
+        try {
+            byte[] data = fileStorageUtil.readFile(fileStorageUtil.getRevocationsFilePath());
+            if (data == null) {
+                return;
+            }
+            
+            Snapshot snapshot = objectMapper.readValue(data, Snapshot.class);
+            long now = System.currentTimeMillis();
+            if (snapshot.tokens() != null) {
+                snapshot.tokens().forEach((tokenId, expiresAt) -> {
+                    if (expiresAt > now) {
+                        revokedTokens.put(tokenId, expiresAt);
+                    }
+                });
+            }
+            if (snapshot.watermarks() != null) {
+                // A watermark covered its whole second; tokens from then carry no epoch claim
+                snapshot.watermarks().forEach((userId, seconds) -> userEpochs.put(userId, seconds * 1000 + 999));
+            }
+            if (snapshot.epochs() != null) {
+                userEpochs.putAll(snapshot.epochs());
+            }
+            log.info("Loaded {} revoked tokens and {} user revocation epochs", revokedTokens.size(), userEpochs.size());
+        } catch (IOException e) {
+            log.error("Error loading token revocations", e);
+        }
+    }
+}
@@ -33,10 +33,14 @@ public class UserPrincipal implements UserDetails {
     @JsonIgnore
     private String password;
     
+    // Both collections are filled with ArrayLists or List.copyOf results, which serialize;
+    // the interface types just cannot say so
+    @SuppressWarnings("serial")
     private List<String> roles;
     private boolean biometricEnabled;
     private boolean accountLocked;
     
+    @SuppressWarnings("serial")
     private Collection<? extends GrantedAuthority> authorities;
     
     public static UserPrincipal create(User user) {
@@ -51,13 +55,30 @@ public class UserPrincipal implements UserDetails {
                 .firstName(user.getFirstName())
                 .lastName(user.getLastName())
                 .email(user.getEmail())
-                .roles(user.getRoles())
+                .roles(List.copyOf(user.getRoles()))
                 .biometricEnabled(user.isBiometricEnabled())
                 .accountLocked(user.isAccountLocked())
                 .authorities(authorities)
                 .build();
     }
     
+    /**
+     * Build a principal from verified token claims alone, without the profile fields or the
+     * password hash that only the store has
+     */
+    public static UserPrincipal fromToken(VerifiedToken token) {
+        List<GrantedAuthority> authorities = token.roles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .collect(Collectors.toList());
+        
+        return UserPrincipal.builder()
+                .id(token.userId())
+                .username(token.subject())
+                .roles(List.copyOf(token.roles()))
+                .authorities(authorities)
+                .build();
+    }
+    
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,263 @@
+package com.auth.archetype.security;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth.archetype.service.TokenIntrospectionService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Optional token verification listener on a Unix domain socket, for sidecars on the same host
+ * that would otherwise go through HTTP and Spring MVC for every check.
+ * 
+ * All integers are big-endian. A request frame is
+ * {@code [u32 length][u32 requestId][token bytes]}, where length counts everything after
+ * itself. Each request gets a response frame {@code [u32 length][u32 requestId][u8 status]},
+ * in request order. Active tokens extend it with
+ * {@code [u8 flags][i64 exp][u16 len][subject][u8 roleCount]{[u16 len][role]}}, strings in
+ * UTF-8 and flag bit 0 marking a refresh token. Status is 0 for active, 1 for inactive and
+ * 2 if the check itself failed or the claims do not fit in a 16 KB response.
+ * 
+ * Clients may pipeline any number of requests. Each connection reads and writes through two
+ * reusable buffers and answers everything it has read with one write, so framing allocates
+ * nothing per request. An oversized or malformed frame closes the connection.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VerificationSocketServer {
+    
+    static final byte STATUS_ACTIVE = 0;
+    static final byte STATUS_INACTIVE = 1;
+    static final byte STATUS_ERROR = 2;
+    static final byte FLAG_REFRESH = 1;
+    
+    private static final int MAX_TOKEN_LENGTH = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    // Room kept free in the output buffer for one response; a larger one is answered with an error
+    private static final int MAX_RESPONSE_SIZE = 16 * 1024;
+    private static final int MAX_STRING_BYTES = 0xffff;
+    
+    private final TokenIntrospectionService introspectionService;
+    
+    @Value("${jwt.socket.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${jwt.socket.path:auth-verify.sock}")
+    private String socketPath;
+    
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel server;
+    private Path path;
+    
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        
+        path = Path.of(socketPath).toAbsolutePath();
+        // A socket file left by an unclean shutdown would make bind fail
+        Files.deleteIfExists(path);
+        
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-rw----"));
+        } catch (UnsupportedOperationException e) {
+            log.warn("Could not restrict permissions of verification socket {}", path);
+        }
+        
+        Thread.ofPlatform().daemon().name("verification-socket-acceptor").start(this::acceptConnections);
+        log.info("Token verification socket listening on {}", path);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (server == null) {
+            return;
+        }
+        
+        try {
+            server.close();
+            for (SocketChannel connection : connections) {
+                connection.close();
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Error closing verification socket", e);
+        }
+    }
+    
+    // Private helper methods
+    
+    private void acceptConnections() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel connection = server.accept();
+                connections.add(connection);
+                // Verification blocks on nothing but the CPU, so cheap virtual threads are enough
+                Thread.ofVirtual().name("verification-socket-connection").start(() -> serve(connection));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.error("Error accepting verification socket connection", e);
+            }
+        }
+    }
+    
+    private void serve(SocketChannel connection) {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        
+        try (connection) {
+            while (connection.read(in) >= 0) {
+                in.flip();
+                
+                while (in.remaining() >= Integer.BYTES) {
+                    int length = in.getInt(in.position());
+                    if (length < Integer.BYTES || length > Integer.BYTES + MAX_TOKEN_LENGTH) {
+                        log.warn("Closing verification socket connection after invalid frame length {}", length);
+                        return;
+                    }
+                    if (in.remaining() < Integer.BYTES + length) {
+                        break;
+                    }
+                    
+                    in.position(in.position() + Integer.BYTES);
+                    int requestId = in.getInt();
+                    int tokenLength = length - Integer.BYTES;
+                    // JWTs are ASCII; Latin-1 decoding is a straight copy
+                    String token = new String(in.array(), in.position(), tokenLength, StandardCharsets.ISO_8859_1);
+                    in.position(in.position() + tokenLength);
+                    
+                    if (out.remaining() < MAX_RESPONSE_SIZE) {
+                        flush(connection, out);
+                    }
+                    writeResponse(out, requestId, token);
+                }
+                
+                in.compact();
+                flush(connection, out);
+            }
+        } catch (IOException e) {
+            log.debug("Verification socket connection closed: {}", e.getMessage());
+        } finally {
+            connections.remove(connection);
+        }
+    }
+    
+    private void writeResponse(ByteBuffer out, int requestId, String token) {
+        int start = out.position();
+        out.position(start + Integer.BYTES);
+        out.putInt(requestId);
+        
+        VerifiedToken verified;
+        try {
+            verified = introspectionService.verifyActive(token);
+        } catch (RuntimeException e) {
+            log.error("Error verifying token on verification socket", e);
+            out.put(STATUS_ERROR);
+            out.putInt(start, out.position() - start - Integer.BYTES);
+            return;
+        }
+        
+        if (verified == null) {
+            out.put(STATUS_INACTIVE);
+        } else if (!putActive(out, verified, start + MAX_RESPONSE_SIZE)) {
+            log.warn("Verification socket response for an active token exceeds {} bytes", MAX_RESPONSE_SIZE);
+            out.position(start + Integer.BYTES + Integer.BYTES);
+            out.put(STATUS_ERROR);
+        }
+        out.putInt(start, out.position() - start - Integer.BYTES);
+    }
+    
+    // Returns false, leaving the position anywhere before limit, if the claims do not fit
+    private static boolean putActive(ByteBuffer out, VerifiedToken verified, int limit) {
+        out.put(STATUS_ACTIVE);
+        out.put(verified.refresh() ? FLAG_REFRESH : 0);
+        out.putLong(verified.expiresAt() != null ? verified.expiresAt().getEpochSecond() : 0);
+        if (!putString(out, verified.subject(), limit) || out.position() >= limit) {
+            return false;
+        }
+        
+        List<String> roles = verified.roles();
+        int roleCount = Math.min(roles.size(), 255);
+        out.put((byte) roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            if (!putString(out, roles.get(i), limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // u16 length-prefixed UTF-8, encoded straight into the buffer; false if it would pass limit
+    // or be longer than a u16 can say
+    private static boolean putString(ByteBuffer out, String value, int limit) {
+        int start = out.position();
+        int end = Math.min(limit, start + Short.BYTES + MAX_STRING_BYTES);
+        if (end - start < Short.BYTES) {
+            return false;
+        }
+        out.position(start + Short.BYTES);
+        
+        for (int i = 0; i < value.length(); i++) {
+            int c = value.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+            }
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (end - out.position() < bytes) {
+                return false;
+            }
+            
+            if (bytes == 1) {
+                out.put((byte) c);
+            } else if (bytes == 2) {
+                out.put((byte) (0xc0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3f));
+            } else if (bytes == 3) {
+                out.put((byte) (0xe0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3f));
+                out.put((byte) (0x80 | c & 0x3f));
+            } else {
+                out.put((byte) (0xf0 | c >> 18));
+                out.put((byte) (0x80 | c >> 12 & 0x3f));
+                out.put((byte) (0x80 | c >> 6 & 0x3f));
+                out.put((byte) (0x80 | c & 0x3f));
+            }
+        }
+        out.putShort(start, (short) (out.position() - start - Short.BYTES));
+        return true;
+    }
+    
+    private static void flush(SocketChannel connection, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            connection.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,34 @@
+package com.auth.archetype.security;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Claims of a JWT whose signature and expiry have already been checked. Immutable, so it can
+ * be passed around and cached without re-parsing the token.
+ * 
+ * {@code tokenId}, {@code securityStamp}, {@code familyId} and {@code revocationEpoch} are null
+ * for tokens issued before those claims were introduced. {@code generation} is only set on
+ * refresh tokens.
+ */
+public record VerifiedToken(
+        String subject,
+        String tokenId,
+        String userId,
+        List<String> roles,
+        Instant issuedAt,
+        Instant expiresAt,
+        boolean refresh,
+        Integer securityStamp,
+        Long familyId,
+        Integer generation,
+        Long revocationEpoch) {
+    
+    public VerifiedToken {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+    }
+    
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+}
@@ -0,0 +1,161 @@
+package com.auth.archetype.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Optional cache of verified tokens, so a client reusing the same access token skips the
+ * signature check and claims decode on every request.
+ * 
+ * Entries are keyed by the SHA-256 of the token rather than the token itself and live until
+ * the token's own expiry at the latest. The size bound uses Caffeine's W-TinyLFU eviction.
+ * Only successfully verified tokens are cached.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    @Value("${jwt.cache.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${jwt.cache.max-size:10000}")
+    private long maxSize;
+    
+    private Cache<TokenKey, VerifiedToken> cache;
+    
+    /**
+     * 256-bit token digest; four longs are cheaper to hash and compare than a byte array
+     */
+    private record TokenKey(long h0, long h1, long h2, long h3) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        log.info("Verified-token cache enabled with up to {} entries", maxSize);
+    }
+    
+    /**
+     * Return the cached claims of a token, verifying and caching it on a miss
+     * 
+     * @param token compact JWT
+     * @param verifier full verification, run on a miss; its exceptions propagate
+     * @return verified claims
+     */
+    public VerifiedToken verify(String token, Function<String, VerifiedToken> verifier) {
+        if (cache == null) {
+            return verifier.apply(token);
+        }
+        
+        VerifiedToken verified = cache.get(keyOf(token), key -> verifier.apply(token));
+        if (verified.isExpired(Instant.now())) {
+            // Expiry is enforced on read, but be exact about the boundary
+            cache.invalidate(keyOf(token));
+            return verifier.apply(token);
+        }
+        return verified;
+    }
+    
+    /**
+     * Drop a single token, e.g. after it has been revoked
+     */
+    public void invalidate(String token) {
+        if (cache != null) {
+            cache.invalidate(keyOf(token));
+        }
+    }
+    
+    /**
+     * Drop every cached token matching a condition, e.g. all tokens of one user
+     */
+    public void invalidateIf(Predicate<VerifiedToken> condition) {
+        if (cache != null) {
+            cache.asMap().values().removeIf(condition);
+        }
+    }
+    
+    /**
+     * @return hit, miss and eviction counters for sizing the cache
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache == null) {
+            return stats;
+        }
+        
+        CacheStats snapshot = cache.stats();
+        stats.put("size", cache.estimatedSize());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", snapshot.hitCount());
+        stats.put("misses", snapshot.missCount());
+        stats.put("hitRate", snapshot.hitRate());
+        stats.put("evictions", snapshot.evictionCount());
+        return stats;
+    }
+    
+    // Private helper methods
+    
+    private static TokenKey keyOf(String token) {
+        MessageDigest digest = SHA_256.get();
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenKey(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+    
+    private static final class UntilTokenExpiry implements Expiry<TokenKey, VerifiedToken> {
+        
+        @Override
+        public long expireAfterCreate(TokenKey key, VerifiedToken token, long currentTime) {
+            if (token.expiresAt() == null) {
+                return Long.MAX_VALUE;
+            }
+            // Saturates instead of overflowing for far-future expiries
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, token.expiresAt().toEpochMilli() - System.currentTimeMillis()));
+        }
+        
+        @Override
+        public long expireAfterUpdate(TokenKey key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(TokenKey key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
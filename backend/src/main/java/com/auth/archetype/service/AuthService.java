@@ -30,10 +30,15 @@ public interface AuthService {
     AuthResponse refreshToken();
     
     /**
-     * Log out the current user
+     * Log out the current user, revoking the token the request was authenticated with
      */
     void logout();
     
+    /**
+     * Log out the current user everywhere, revoking every token issued to them so far
+     */
+    void logoutAll();
+    
     /**
      * Check if a username already exists
      * 
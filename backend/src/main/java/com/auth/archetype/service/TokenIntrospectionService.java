@@ -0,0 +1,40 @@
+package com.auth.archetype.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.auth.archetype.dto.IntrospectionResult;
+import com.auth.archetype.security.VerifiedToken;
+
+public interface TokenIntrospectionService {
+    
+    /**
+     * Verify a batch of tokens in parallel
+     * 
+     * @param tokens compact JWTs
+     * @return one result per token, in the same order
+     */
+    List<IntrospectionResult> introspect(List<String> tokens);
+    
+    /**
+     * Check a single token the way introspection does
+     * 
+     * @param token compact JWT
+     * @return the verified claims, or null if the token is invalid, expired, revoked or was
+     *         issued before its user's last security-relevant change
+     */
+    VerifiedToken verifyActive(String token);
+    
+    /**
+     * Verify tokens read as NDJSON, one token per line, writing one NDJSON result line per
+     * token in the same order. Lines may hold a JSON string or the bare token; blank lines are
+     * skipped. Input is processed in bounded batches, so memory use does not grow with its size.
+     * 
+     * @param in NDJSON tokens
+     * @param out NDJSON results; flushed after every batch and left open
+     * @throws IOException if reading or writing fails
+     */
+    void introspectStream(InputStream in, OutputStream out) throws IOException;
+}
@@ -5,8 +5,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,12 +15,22 @@ import com.auth.archetype.dto.LoginRequest;
 import com.auth.archetype.dto.RegisterRequest;
 import com.auth.archetype.dto.UserDto;
 import com.auth.archetype.exception.AuthException;
+import com.auth.archetype.exception.ServiceOverloadedException;
 import com.auth.archetype.model.User;
-import com.auth.archetype.repository.FileUserRepository;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.security.CredentialStuffingDetector;
 import com.auth.archetype.security.JwtTokenProvider;
+import com.auth.archetype.security.LoginEvent;
+import com.auth.archetype.security.LoginEventQueue;
+import com.auth.archetype.security.LoginPipeline;
+import com.auth.archetype.security.RefreshTokenStore;
+import com.auth.archetype.security.TokenPair;
+import com.auth.archetype.security.TokenRevocationStore;
 import com.auth.archetype.security.UserPrincipal;
+import com.auth.archetype.security.VerifiedToken;
 import com.auth.archetype.service.AuthService;
 import com.auth.archetype.service.UserService;
+import com.auth.archetype.util.RequestUtil;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,11 +40,15 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AuthServiceImpl implements AuthService {
 
-    private final AuthenticationManager authenticationManager;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider tokenProvider;
-    private final FileUserRepository userRepository;
+    private final UserRepository userRepository;
     private final UserService userService;
+    private final TokenRevocationStore tokenRevocations;
+    private final RefreshTokenStore refreshTokens;
+    private final CredentialStuffingDetector stuffingDetector;
+    private final LoginEventQueue loginEvents;
+    private final LoginPipeline loginPipeline;
     
     @Override
     public AuthResponse register(RegisterRequest registerRequest) {
@@ -74,61 +86,44 @@ public class AuthServiceImpl implements AuthService {
         UserDto userDto = mapUserToDto(user);
         
         // Generate tokens
-        String accessToken = tokenProvider.generateToken(user);
-        String refreshToken = tokenProvider.generateRefreshToken(user);
+        TokenPair tokens = tokenProvider.generateTokenPair(user);
         
-        return AuthResponse.success(accessToken, refreshToken, userDto);
+        return AuthResponse.success(tokens.accessToken(), tokens.refreshToken(), userDto);
     }
     
     @Override
     public AuthResponse login(LoginRequest loginRequest) {
+        LoginPipeline.Result result;
         try {
-            // Authenticate with username and password
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    loginRequest.getUsername(),
-                    loginRequest.getPassword()
-                )
-            );
-            
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            
-            // Get user details
-            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-            User user = userService.getUserByUsername(userPrincipal.getUsername());
-            
-            // Check if biometric authentication is required
-            if (user.isBiometricEnabled()) {
+            result = loginPipeline.login(loginRequest.getUsername(), loginRequest.getPassword());
+        } catch (ServiceOverloadedException e) {
+            // The password was never checked, so this is not a failed attempt
+            throw e;
+        } catch (Exception e) {
+            // Not the client's fault, so not counted against the account
+            log.error("Login failed for user: {}", loginRequest.getUsername(), e);
+            throw new AuthException("Invalid username or password");
+        }
+        
+        switch (result.outcome()) {
+            case SUCCESS -> {
+                return AuthResponse.success(result.tokens().accessToken(), result.tokens().refreshToken(),
+                        mapUserToDto(result.user()));
+            }
+            case BIOMETRIC_REQUIRED -> {
                 // Return a response indicating biometric verification is needed
                 return AuthResponse.requiresBiometric(
-                    generateBiometricChallenge(user.getUsername()),
-                    mapUserToDto(user)
+                    generateBiometricChallenge(result.user().getUsername()),
+                    mapUserToDto(result.user())
                 );
             }
-            
-            // Update login info
-            user.updateLoginInfo("0.0.0.0", "PASSWORD"); // IP would come from request in a real app
-            userRepository.save(user);
-            
-            // Generate tokens
-            String accessToken = tokenProvider.generateToken(user);
-            String refreshToken = tokenProvider.generateRefreshToken(user);
-            
-            return AuthResponse.success(accessToken, refreshToken, mapUserToDto(user));
-        } catch (Exception e) {
-            // Handle authentication failure
-            log.error("Login failed for user: {}", loginRequest.getUsername(), e);
-            
-            // Increment failed attempts
-            try {
-                User user = userService.getUserByUsername(loginRequest.getUsername());
-                user.incrementFailedLoginAttempts();
-                userRepository.save(user);
-            } catch (Exception ex) {
-                // User not found, just ignore
+            default -> {
+                // Wrong password, unknown user or locked account: the common case under attack,
+                // so it is counted off the request thread and answered with a shared exception
+                loginEvents.publish(new LoginEvent.Failed(loginRequest.getUsername(), result.failure()));
+                stuffingDetector.recordFailure(RequestUtil.clientIp(), loginRequest.getUsername());
+                throw AuthException.invalidCredentials();
             }
-            
-            throw new AuthException("Invalid username or password");
         }
     }
     
@@ -140,26 +135,68 @@ public class AuthServiceImpl implements AuthService {
             throw new AuthException("Not authenticated");
         }
         
+        if (!(authentication.getCredentials() instanceof VerifiedToken presented) || !presented.refresh()) {
+            throw new AuthException("A refresh token is required");
+        }
+        
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
         User user = userService.getUserByUsername(userPrincipal.getUsername());
         
-        // Generate new tokens
-        String accessToken = tokenProvider.generateToken(user);
-        String refreshToken = tokenProvider.generateRefreshToken(user);
+        // Refresh tokens are single use: each refresh moves the session family to its next generation
+        TokenPair tokens;
+        if (presented.familyId() == null || presented.generation() == null) {
+            // Issued before rotation was introduced; retire it and start a tracked session
+            tokenRevocations.revoke(presented);
+            tokens = tokenProvider.generateTokenPair(user);
+        } else {
+            long familyId = presented.familyId();
+            int generation = presented.generation();
+            
+            switch (refreshTokens.rotate(familyId, generation)) {
+                case ROTATED -> tokens = tokenProvider.generateTokenPair(user, familyId, generation + 1);
+                case REUSED -> {
+                    log.warn("Refresh token reuse detected for user: {}; session revoked", user.getUsername());
+                    throw new AuthException("Refresh token has already been used");
+                }
+                default -> throw new AuthException("Refresh token is no longer valid");
+            }
+        }
         
-        return AuthResponse.success(accessToken, refreshToken, mapUserToDto(user));
+        return AuthResponse.success(tokens.accessToken(), tokens.refreshToken(), mapUserToDto(user));
     }
     
     @Override
     public void logout() {
-        // In a stateless JWT-based auth system, there's not much to do server-side for logout
-        // The client should discard the tokens
-        // If you were tracking tokens or sessions, you'd invalidate them here
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        
+        // Deny the presented token until it expires and end its session's refresh-token family
+        if (authentication != null && authentication.getCredentials() instanceof VerifiedToken token) {
+            tokenRevocations.revoke(token);
+            if (token.familyId() != null) {
+                refreshTokens.revokeFamily(token.familyId());
+            }
+            log.info("Token revoked for user: {}", token.subject());
+        }
         
         // Clear security context
         SecurityContextHolder.clearContext();
     }
     
+    @Override
+    public void logoutAll() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new AuthException("Not authenticated");
+        }
+        
+        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        tokenRevocations.revokeAllForUser(userPrincipal.getId());
+        log.info("All tokens revoked for user: {}", userPrincipal.getUsername());
+        
+        SecurityContextHolder.clearContext();
+    }
+    
     @Override
     public boolean existsByUsername(String username) {
         return userRepository.findByUsername(username).isPresent();
@@ -12,12 +12,18 @@ import com.auth.archetype.dto.AuthResponse;
 import com.auth.archetype.dto.BiometricVerificationRequest;
 import com.auth.archetype.dto.UserDto;
 import com.auth.archetype.exception.AuthException;
+import com.auth.archetype.exception.ResourceNotFoundException;
 import com.auth.archetype.model.BiometricInfo;
 import com.auth.archetype.model.User;
-import com.auth.archetype.repository.FileUserRepository;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.security.CredentialStuffingDetector;
 import com.auth.archetype.security.JwtTokenProvider;
+import com.auth.archetype.security.LoginEvent;
+import com.auth.archetype.security.LoginEventQueue;
+import com.auth.archetype.security.TokenPair;
 import com.auth.archetype.service.BiometricService;
 import com.auth.archetype.service.UserService;
+import com.auth.archetype.util.RequestUtil;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,49 +35,44 @@ public class BiometricServiceImpl implements BiometricService {
 
     private final UserService userService;
     private final JwtTokenProvider tokenProvider;
-    private final FileUserRepository userRepository;
+    private final UserRepository userRepository;
+    private final CredentialStuffingDetector stuffingDetector;
+    private final LoginEventQueue loginEvents;
     
     // In-memory storage for challenges (would use a proper cache in production)
     private final Map<String, String> challenges = new HashMap<>();
     
     @Override
     public AuthResponse verifyBiometric(BiometricVerificationRequest request) {
-        User user = userService.getUserByUsername(request.getUsername());
-        
-        if (!user.isBiometricEnabled()) {
-            throw new AuthException("Biometric authentication not enabled for this user");
+        User user;
+        try {
+            user = userService.getUserByUsername(request.getUsername());
+            
+            if (!user.isBiometricEnabled()) {
+                throw new AuthException("Biometric authentication not enabled for this user");
+            }
+        } catch (AuthException | ResourceNotFoundException e) {
+            stuffingDetector.recordFailure(RequestUtil.clientIp(), request.getUsername());
+            throw e;
         }
         
         // In a real application, we would verify the biometric credential here
         // For this demo, we'll simulate successful verification
         
-        // Update biometric usage info
-        BiometricInfo bioInfo = user.getBiometricInfo();
-        if (bioInfo == null) {
-            // If user has biometric enabled but no info, create a default one
-            bioInfo = BiometricInfo.create(
-                request.getBiometricType() != null ? request.getBiometricType() : "fingerprint",
-                request.getDeviceId() != null ? request.getDeviceId() : "default-device"
-            );
-            user.setBiometricInfo(bioInfo);
-        }
-        
-        bioInfo.incrementUsage();
-        
-        // Update login info
-        user.updateLoginInfo("0.0.0.0", "BIOMETRIC");
-        user = userRepository.save(user);
-        
-        log.info("Biometric verification successful for user: {}", user.getUsername());
+        // Biometric usage and login info are stored by the event queue; the copy in hand
+        // already shows this login
+        LoginEvent.Succeeded login = LoginEvent.Succeeded.biometric(user, "0.0.0.0",
+                request.getBiometricType(), request.getDeviceId());
+        login.applyTo(user);
+        loginEvents.publish(login);
         
         // Generate tokens
-        String token = tokenProvider.generateToken(user);
-        String refreshToken = tokenProvider.generateRefreshToken(user);
+        TokenPair tokens = tokenProvider.generateTokenPair(user);
         
         // Create user DTO for response
         UserDto userDto = mapUserToDto(user);
         
-        return AuthResponse.success(token, refreshToken, userDto);
+        return AuthResponse.success(tokens.accessToken(), tokens.refreshToken(), userDto);
     }
     
     @Override
@@ -0,0 +1,189 @@
+package com.auth.archetype.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.auth.archetype.dto.IntrospectionResult;
+import com.auth.archetype.security.JwtTokenProvider;
+import com.auth.archetype.security.SecurityStampRegistry;
+import com.auth.archetype.security.TokenRevocationStore;
+import com.auth.archetype.security.VerifiedToken;
+import com.auth.archetype.security.VerifiedTokenCache;
+import com.auth.archetype.service.TokenIntrospectionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenIntrospectionServiceImpl implements TokenIntrospectionService {
+    
+    // Below this many tokens per worker the hand-off costs more than the verification
+    private static final int MIN_CHUNK_SIZE = 32;
+    
+    private static final int STREAM_BATCH_SIZE = 512;
+    
+    private final JwtTokenProvider tokenProvider;
+    private final VerifiedTokenCache tokenCache;
+    private final TokenRevocationStore revocations;
+    private final SecurityStampRegistry securityStamps;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter resultWriter = objectMapper.writerFor(IntrospectionResult.class);
+    
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+    private ExecutorService workers;
+    
+    @PostConstruct
+    public void init() {
+        // The calling thread verifies one chunk itself, so one fewer worker keeps every core busy
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism - 1), runnable -> {
+            Thread thread = new Thread(runnable, "token-introspection-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+    
+    @Override
+    public List<IntrospectionResult> introspect(List<String> tokens) {
+        int size = tokens.size();
+        IntrospectionResult[] results = new IntrospectionResult[size];
+        Instant now = Instant.now();
+        
+        int chunks = Math.max(1, Math.min(parallelism, size / MIN_CHUNK_SIZE));
+        int chunkSize = (size + chunks - 1) / chunks;
+        
+        List<CompletableFuture<Void>> pending = new ArrayList<>(chunks - 1);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int from = chunk * chunkSize;
+            int to = Math.min(size, from + chunkSize);
+            pending.add(CompletableFuture.runAsync(() -> introspectRange(tokens, results, from, to, now), workers));
+        }
+        
+        introspectRange(tokens, results, 0, Math.min(size, chunkSize), now);
+        pending.forEach(CompletableFuture::join);
+        
+        return Arrays.asList(results);
+    }
+    
+    @Override
+    public VerifiedToken verifyActive(String token) {
+        return verifyActive(token, Instant.now());
+    }
+    
+    @Override
+    public void introspectStream(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        int total = 0;
+        
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String token = line.strip();
+            if (token.isEmpty()) {
+                continue;
+            }
+            
+            batch.add(token.startsWith("\"") ? objectMapper.readValue(token, String.class) : token);
+            if (batch.size() == STREAM_BATCH_SIZE) {
+                writeResults(introspect(batch), out);
+                total += batch.size();
+                batch.clear();
+            }
+        }
+        
+        if (!batch.isEmpty()) {
+            writeResults(introspect(batch), out);
+            total += batch.size();
+        }
+        log.debug("Streamed introspection of {} tokens", total);
+    }
+    
+    // Private helper methods
+    
+    private void introspectRange(List<String> tokens, IntrospectionResult[] results, int from, int to, Instant now) {
+        for (int i = from; i < to; i++) {
+            results[i] = introspect(tokens.get(i), now);
+        }
+    }
+    
+    private IntrospectionResult introspect(String token, Instant now) {
+        VerifiedToken verified = verifyActive(token, now);
+        if (verified == null) {
+            return IntrospectionResult.inactive();
+        }
+        
+        return IntrospectionResult.builder()
+                .active(true)
+                .sub(verified.subject())
+                .roles(verified.roles())
+                .exp(verified.expiresAt() != null ? verified.expiresAt().getEpochSecond() : null)
+                .refresh(verified.refresh() ? Boolean.TRUE : null)
+                .build();
+    }
+    
+    private VerifiedToken verifyActive(String token, Instant now) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        
+        try {
+            // Same path as request authentication: cached verification, then revocation and stamp checks
+            VerifiedToken verified = tokenCache.verify(token, tokenProvider::verify);
+            
+            if (verified.isExpired(now) || revocations.isRevoked(verified) || !hasCurrentStamp(verified)) {
+                return null;
+            }
+            return verified;
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // Any other failure is still this token's alone; it must not fail the rest of a batch
+            log.warn("Could not introspect token, reporting it inactive: {}", e.toString());
+            return null;
+        }
+    }
+    
+    // Tokens issued before stamps existed cannot be checked this way and are accepted as before
+    private boolean hasCurrentStamp(VerifiedToken token) {
+        return token.securityStamp() == null || token.userId() == null
+                || securityStamps.isCurrent(token.userId(), token.securityStamp());
+    }
+    
+    private void writeResults(List<IntrospectionResult> results, OutputStream out) throws IOException {
+        for (IntrospectionResult result : results) {
+            out.write(resultWriter.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
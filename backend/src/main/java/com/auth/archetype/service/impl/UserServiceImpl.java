@@ -1,6 +1,5 @@
 package com.auth.archetype.service.impl;
 
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
@@ -17,7 +16,8 @@ import com.auth.archetype.exception.AuthException;
 import com.auth.archetype.exception.ResourceNotFoundException;
 import com.auth.archetype.model.BiometricInfo;
 import com.auth.archetype.model.User;
-import com.auth.archetype.repository.FileUserRepository;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.security.FailedLoginTracker;
 import com.auth.archetype.security.UserPrincipal;
 import com.auth.archetype.service.UserService;
 
@@ -29,8 +29,9 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class UserServiceImpl implements UserService {
 
-    private final FileUserRepository userRepository;
+    private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final FailedLoginTracker failedLogins;
     
     @Override
     public List<UserDto> getAllUsers() {
@@ -95,28 +96,32 @@ public class UserServiceImpl implements UserService {
             throw new AuthException("You don't have permission to update this user");
         }
         
-        // Update basic info
-        user.setFirstName(userDto.getFirstName());
-        user.setLastName(userDto.getLastName());
-        
-        // Only admin can update roles
-        if (currentUser.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
-            user.setRoles(userDto.getRoles());
-        }
-        
-        // Update password if provided
-        if (userDto.getPassword() != null && !userDto.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(userDto.getPassword()));
-        }
-        
-        // Update biometric settings
-        user.setBiometricEnabled(userDto.isBiometricEnabled());
-        
-        // Update timestamp
-        user.setUpdatedAt(LocalDateTime.now());
-        
-        // Save changes
-        user = userRepository.save(user);
+        boolean isAdmin = currentUser.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        
+        // Hash once up front; the change below may be re-applied if it races another save
+        String encodedPassword = userDto.getPassword() != null && !userDto.getPassword().isEmpty()
+                ? passwordEncoder.encode(userDto.getPassword())
+                : null;
+        
+        // Apply the changes to the latest stored version so concurrent logins are not lost
+        user = userRepository.update(id, current -> {
+            // Update basic info
+            current.setFirstName(userDto.getFirstName());
+            current.setLastName(userDto.getLastName());
+            
+            // Only admin can update roles
+            if (isAdmin) {
+                current.setRoles(userDto.getRoles());
+            }
+            
+            // Update password if provided
+            if (encodedPassword != null) {
+                current.setPassword(encodedPassword);
+            }
+            
+            // Update biometric settings
+            current.setBiometricEnabled(userDto.isBiometricEnabled());
+        }).orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
         log.info("User updated: {}", user.getUsername());
         
         return mapUserToDto(user);
@@ -144,10 +149,8 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
         
-        user.setPassword(passwordEncoder.encode(newPassword));
-        user.setUpdatedAt(LocalDateTime.now());
-        
-        userRepository.save(user);
+        String encodedPassword = passwordEncoder.encode(newPassword);
+        userRepository.update(id, current -> current.setPassword(encodedPassword));
         log.info("Password reset for user: {}", user.getUsername());
     }
     
@@ -165,16 +168,14 @@ public class UserServiceImpl implements UserService {
             throw new AuthException("You don't have permission to update this user's biometric settings");
         }
         
-        user.setBiometricEnabled(enabled);
-        
-        // Clear biometric info if disabling
-        if (!enabled && user.getBiometricInfo() != null) {
-            user.setBiometricInfo(null);
-        }
-        
-        user.setUpdatedAt(LocalDateTime.now());
-        
-        user = userRepository.save(user);
+        user = userRepository.update(id, current -> {
+            current.setBiometricEnabled(enabled);
+            
+            // Clear biometric info if disabling
+            if (!enabled && current.getBiometricInfo() != null) {
+                current.setBiometricInfo(null);
+            }
+        }).orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
         log.info("Biometric authentication {} for user: {}", 
                 enabled ? "enabled" : "disabled", user.getUsername());
         
@@ -213,7 +214,8 @@ public class UserServiceImpl implements UserService {
         }
         
         activity.put("lastLoginMethod", user.getLastLoginMethod());
-        activity.put("failedAttempts", user.getFailedLoginAttempts());
+        // Failures are counted in memory and only stored when they lock the account
+        activity.put("failedAttempts", Math.max(user.getFailedLoginAttempts(), failedLogins.failures(user.getUsername())));
         activity.put("offlineEnabled", user.isBiometricEnabled()); // We're using biometric for offline auth
         
         // Other activity info could be added here
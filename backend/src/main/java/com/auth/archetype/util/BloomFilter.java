@@ -0,0 +1,65 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent Bloom filter over strings. A negative answer is definite, a positive one may be
+ * wrong with roughly the configured probability while the filter holds no more than its
+ * expected number of keys. Adding is lock-free; keys cannot be removed, so owners rebuild the
+ * filter when their key set shrinks.
+ */
+public class BloomFilter {
+    
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final int expectedInsertions;
+    
+    /**
+     * @param expectedInsertions number of keys the false-positive rate is sized for
+     * @param falsePositiveRate target false-positive probability, e.g. 0.01
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) >>> 6));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.expectedInsertions * Math.log(2)));
+    }
+    
+    public int expectedInsertions() {
+        return expectedInsertions;
+    }
+    
+    public void add(CharSequence key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            words.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+        }
+    }
+    
+    public boolean mightContain(CharSequence key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Private helper methods
+    
+    private long index(int combinedHash) {
+        return (combinedHash & 0x7fffffffL) % bitCount;
+    }
+}
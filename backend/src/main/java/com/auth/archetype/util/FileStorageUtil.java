@@ -1,20 +1,52 @@
 package com.auth.archetype.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 @Component
 @Slf4j
 public class FileStorageUtil {
-
+    
     @Value("${app.file.storage.path}")
     private String storagePath;
     
@@ -24,6 +56,74 @@ public class FileStorageUtil {
     @Value("${app.file.biometrics}")
     private String biometricsFileName;
     
+    /**
+     * How hard writes try to reach stable storage before returning.
+     * 
+     * NONE never fsyncs, ASYNC fsyncs in the background after returning, GROUP_COMMIT
+     * blocks until a shared fsync covering the write completes, and SYNC fsyncs every
+     * write on the caller's thread.
+     */
+    public enum Durability {
+        NONE,
+        ASYNC,
+        GROUP_COMMIT,
+        SYNC;
+        
+        public static Durability fromProperty(String value) {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+    
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
+    private final Durability durability;
+    
+    // Background fsyncs for ASYNC durability
+    private final ExecutorService asyncSyncExecutor = Executors.newSingleThreadExecutor(
+            daemonThreadFactory("file-storage-async-sync"));
+    
+    // Temp files waiting for the group committer to fsync and rename them into place
+    private final BlockingQueue<PendingRename> pendingRenames = new LinkedBlockingQueue<>();
+    private Thread groupCommitter;
+    
+    // Per-channel group sync state for append-only files such as the user journal
+    private final Map<FileChannel, ChannelSync> channelSyncs = Collections.synchronizedMap(new WeakHashMap<>());
+    
+    public FileStorageUtil(@Value("${app.file.durability:none}") String durability) {
+        this.durability = Durability.fromProperty(durability);
+        log.info("File storage durability: {}", this.durability);
+    }
+    
+    public Durability getDurability() {
+        return durability;
+    }
+    
+    /**
+     * Callback that streams file contents. Implementations must not close the stream.
+     */
+    @FunctionalInterface
+    public interface StreamWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+    
+    /**
+     * A write that has been handed to the file system but may still be waiting to become
+     * durable
+     */
+    @FunctionalInterface
+    public interface PendingWrite {
+        
+        PendingWrite DONE = () -> {
+        };
+        
+        /**
+         * Block until the write is as durable as the configured level promises
+         * 
+         * @throws IOException if committing the write failed
+         */
+        void await() throws IOException;
+    }
+    
     /**
      * Initialize storage directories if they don't exist
      */
@@ -49,6 +149,60 @@ public class FileStorageUtil {
         return Paths.get(storagePath, usersFileName).toString();
     }
     
+    /**
+     * Get the full path to the users journal file
+     * 
+     * @return path to users journal file
+     */
+    public String getUsersJournalFilePath() {
+        return Paths.get(storagePath, usersFileName + ".journal").toString();
+    }
+    
+    /**
+     * Get the directory holding memory-mapped user segments
+     * 
+     * @return path to the segments directory
+     */
+    public String getUserSegmentsPath() {
+        return Paths.get(storagePath, "segments").toString();
+    }
+    
+    /**
+     * Get the base path of the embedded user database
+     * 
+     * @return absolute path to the database, without the engine's file extension
+     */
+    public String getUserDatabasePath() {
+        return Paths.get(storagePath, "users-db").toAbsolutePath().toString();
+    }
+    
+    /**
+     * Get the full path to the token revocations file
+     * 
+     * @return path to token revocations file
+     */
+    public String getRevocationsFilePath() {
+        return Paths.get(storagePath, "revocations.json").toString();
+    }
+    
+    /**
+     * Get the full path to the token signing keys file
+     * 
+     * @return path to signing keys file
+     */
+    public String getSigningKeysFilePath() {
+        return Paths.get(storagePath, "signing-keys.json").toString();
+    }
+    
+    /**
+     * Get the full path to the refresh token families snapshot
+     * 
+     * @return path to refresh token families file; its journal sits next to it
+     */
+    public String getRefreshFamiliesFilePath() {
+        return Paths.get(storagePath, "refresh-families.dat").toString();
+    }
+    
     /**
      * Get the full path to the biometrics file
      * 
@@ -77,23 +231,107 @@ public class FileStorageUtil {
     }
     
     /**
-     * Write data to a file
+     * Open a file from storage for streaming reads
      * 
      * @param filePath path to the file
-     * @param data data to write
-     * @throws IOException if writing fails
+     * @return stream over the file contents, or null if file doesn't exist
+     * @throws IOException if opening fails
      */
-    public void writeFile(String filePath, byte[] data) throws IOException {
+    public InputStream openFile(String filePath) throws IOException {
         Path path = Paths.get(filePath);
         
-        // Ensure parent directory exists
-        Path parentDir = path.getParent();
-        if (!Files.exists(parentDir)) {
-            Files.createDirectories(parentDir);
+        if (!Files.exists(path)) {
+            log.info("File not found: {}", filePath);
+            return null;
         }
         
-        Files.write(path, data);
-        log.debug("Wrote {} bytes to file: {}", data.length, filePath);
+        return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    }
+    
+    /**
+     * Write data to a file. The data goes to a temp file in the same directory which is then
+     * atomically renamed over the target, so readers and crashes never see a partial file.
+     * 
+     * @param filePath path to the file
+     * @param data data to write
+     * @throws IOException if writing fails
+     */
+    public void writeFile(String filePath, byte[] data) throws IOException {
+        writeFile(filePath, out -> out.write(data));
+    }
+    
+    /**
+     * Stream data to a file through a fixed-size buffer, so the full contents never have to be
+     * held in memory. Uses the same temp file, rename and durability handling as
+     * {@link #writeFile(String, byte[])}.
+     * 
+     * @param filePath path to the file
+     * @param writer callback that writes the contents
+     * @throws IOException if writing fails
+     */
+    public void writeFile(String filePath, StreamWriter writer) throws IOException {
+        writeFile(filePath, writer, false, false).await();
+    }
+    
+    /**
+     * Stream data to a file like {@link #writeFile(String, StreamWriter)}, but leave waiting
+     * for a GROUP_COMMIT fsync to the caller. The file is written and queued for commit, in
+     * call order, before this returns; call {@link PendingWrite#await()} after releasing any
+     * lock held around the write, so that concurrent writers can share a single fsync. Under
+     * the other levels the write is already complete when this returns.
+     * 
+     * @param filePath path to the file
+     * @param writer callback that writes the contents
+     * @return the write to await
+     * @throws IOException if writing fails
+     */
+    public PendingWrite writeFileDeferred(String filePath, StreamWriter writer) throws IOException {
+        return writeFile(filePath, writer, false, false);
+    }
+    
+    /**
+     * Stream data to a file and fsync it and its directory before returning, whatever the
+     * configured durability. For writes that something else is discarded on the strength of,
+     * such as a snapshot replacing a journal.
+     * 
+     * @param filePath path to the file
+     * @param writer callback that writes the contents
+     * @throws IOException if writing or syncing fails
+     */
+    public void writeFileDurably(String filePath, StreamWriter writer) throws IOException {
+        writeFile(filePath, writer, true, false).await();
+    }
+    
+    /**
+     * Write a file holding secrets, such as private keys. It is readable and writable by the
+     * owner only (0600) where the file system has POSIX permissions, and is synced like
+     * {@link #writeFileDurably(String, StreamWriter)}.
+     * 
+     * @param filePath path to the file
+     * @param data data to write
+     * @throws IOException if writing or syncing fails
+     */
+    public void writeSecretFile(String filePath, byte[] data) throws IOException {
+        writeFile(filePath, out -> out.write(data), true, true).await();
+    }
+    
+    /**
+     * Make appends to an open channel durable according to the configured durability level.
+     * Call this after releasing any lock held around the append, so that concurrent writers
+     * can share a single fsync under GROUP_COMMIT.
+     * 
+     * @param channel channel that was appended to
+     * @throws IOException if the fsync fails
+     */
+    public void sync(FileChannel channel) throws IOException {
+        switch (durability) {
+            case NONE -> {
+                // Leave it to the OS page cache
+            }
+            case ASYNC -> channelSync(channel).scheduleAsync();
+            case GROUP_COMMIT -> channelSync(channel).awaitGroupSync();
+            case SYNC -> forceQuietlyIfClosed(channel);
+        }
     }
     
     /**
@@ -126,6 +364,16 @@ public class FileStorageUtil {
         return Files.exists(Paths.get(filePath));
     }
     
+    @PreDestroy
+    public void shutdown() {
+        asyncSyncExecutor.shutdown();
+        try {
+            asyncSyncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     /**
      * Create a backup of a file
      * 
@@ -146,4 +394,296 @@ public class FileStorageUtil {
         log.info("Created backup of file {} at {}", filePath, backupPath);
         return true;
     }
+    
+    // Private helper methods
+    
+    private PendingWrite writeFile(String filePath, StreamWriter writer, boolean forceSync, boolean ownerOnly)
+            throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        
+        // Ensure parent directory exists
+        Path parentDir = path.getParent();
+        if (!Files.exists(parentDir)) {
+            Files.createDirectories(parentDir);
+        }
+        
+        Path temp = Files.createTempFile(parentDir, path.getFileName().toString(), ".tmp");
+        long written;
+        PendingWrite pending;
+        try {
+            if (ownerOnly) {
+                restrictToOwner(temp);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(
+                        new UnclosableOutputStream(Channels.newOutputStream(channel)), WRITE_BUFFER_SIZE);
+                writer.writeTo(out);
+                out.flush();
+                written = channel.position();
+                if (durability == Durability.SYNC || (forceSync && !isSynchronous())) {
+                    channel.force(true);
+                }
+            }
+            if (forceSync && !isSynchronous()) {
+                moveAtomically(temp, path);
+                forceDirectory(parentDir);
+                pending = PendingWrite.DONE;
+            } else {
+                pending = commitTempFile(temp, path);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        
+        log.debug("Wrote {} bytes to file: {}", written, filePath);
+        return pending;
+    }
+    
+    // Set before anything is written, and carried over to the target by the rename
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            log.warn("Could not restrict permissions of {} to its owner", file);
+        }
+    }
+    
+    // True if the configured durability already has a write on stable storage when it returns
+    private boolean isSynchronous() {
+        return durability == Durability.SYNC || durability == Durability.GROUP_COMMIT;
+    }
+    
+    private PendingWrite commitTempFile(Path temp, Path target) throws IOException {
+        switch (durability) {
+            case NONE -> moveAtomically(temp, target);
+            case SYNC -> {
+                moveAtomically(temp, target);
+                forceDirectory(target.getParent());
+            }
+            case ASYNC -> {
+                moveAtomically(temp, target);
+                asyncSyncExecutor.execute(() -> {
+                    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+                        channel.force(true);
+                        forceDirectory(target.getParent());
+                    } catch (IOException e) {
+                        log.warn("Background fsync of {} failed: {}", target, e.getMessage());
+                    }
+                });
+            }
+            case GROUP_COMMIT -> {
+                PendingRename pending = new PendingRename(temp, target, new CompletableFuture<>());
+                startGroupCommitter();
+                pendingRenames.add(pending);
+                return () -> awaitGroupCommit(pending);
+            }
+        }
+        return PendingWrite.DONE;
+    }
+    
+    private static void awaitGroupCommit(PendingRename pending) throws IOException {
+        try {
+            pending.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for group commit of " + pending.target(), e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+    
+    private synchronized void startGroupCommitter() {
+        if (groupCommitter == null) {
+            groupCommitter = daemonThreadFactory("file-storage-group-commit").newThread(this::runGroupCommits);
+            groupCommitter.start();
+        }
+    }
+    
+    /**
+     * Commit loop for GROUP_COMMIT: every batch of waiting writers shares one pass of fsyncs,
+     * renames and directory fsyncs. When several writers replaced the same file, only the
+     * newest temp file is kept.
+     */
+    private void runGroupCommits() {
+        List<PendingRename> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pendingRenames.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pendingRenames.drainTo(batch);
+            
+            Map<Path, PendingRename> latest = new LinkedHashMap<>();
+            for (PendingRename pending : batch) {
+                PendingRename superseded = latest.put(pending.target(), pending);
+                if (superseded != null) {
+                    deleteQuietly(superseded.temp());
+                }
+            }
+            
+            try {
+                Set<Path> directories = new LinkedHashSet<>();
+                for (PendingRename pending : latest.values()) {
+                    try (FileChannel channel = FileChannel.open(pending.temp(), StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    moveAtomically(pending.temp(), pending.target());
+                    directories.add(pending.target().getParent());
+                }
+                for (Path directory : directories) {
+                    forceDirectory(directory);
+                }
+                batch.forEach(pending -> pending.done().complete(null));
+                log.debug("Group commit of {} writes to {} files", batch.size(), latest.size());
+            } catch (IOException | RuntimeException e) {
+                latest.values().forEach(pending -> deleteQuietly(pending.temp()));
+                batch.forEach(pending -> pending.done().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+    
+    private ChannelSync channelSync(FileChannel channel) {
+        synchronized (channelSyncs) {
+            return channelSyncs.computeIfAbsent(channel, ChannelSync::new);
+        }
+    }
+    
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private static void forceDirectory(Path directory) {
+        // Persists the rename itself; not every platform allows opening a directory
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not fsync directory {}: {}", directory, e.getMessage());
+        }
+    }
+    
+    private static void forceQuietlyIfClosed(FileChannel channel) throws IOException {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Channels are forced before they are closed, so there is nothing left to sync
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", path, e.getMessage());
+        }
+    }
+    
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Keeps stream writers (and JSON generators that auto-close their target) from closing
+     * the channel before it has been forced and renamed.
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+        
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+    
+    private record PendingRename(Path temp, Path target, CompletableFuture<Void> done) {
+    }
+    
+    /**
+     * Group fsync state for one channel. The first writer to arrive forces the channel on
+     * behalf of everyone who appended before the force started; writers that arrive while a
+     * force is running wait and are covered by the next one.
+     */
+    private final class ChannelSync {
+        
+        private final FileChannel channel;
+        private final AtomicBoolean asyncScheduled = new AtomicBoolean();
+        
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition forced = lock.newCondition();
+        
+        private long requested;
+        private long synced;
+        private boolean syncing;
+        
+        ChannelSync(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        void scheduleAsync() {
+            if (asyncScheduled.compareAndSet(false, true)) {
+                asyncSyncExecutor.execute(() -> {
+                    asyncScheduled.set(false);
+                    try {
+                        forceQuietlyIfClosed(channel);
+                    } catch (IOException e) {
+                        log.warn("Background fsync failed: {}", e.getMessage());
+                    }
+                });
+            }
+        }
+        
+        void awaitGroupSync() throws IOException {
+            lock.lock();
+            try {
+                long ticket = ++requested;
+                while (synced < ticket) {
+                    if (syncing) {
+                        forced.awaitUninterruptibly();
+                        continue;
+                    }
+                    
+                    // Lead a force covering every append that has taken a ticket so far;
+                    // the lock is released meanwhile so later writers can queue behind it
+                    long covered = requested;
+                    syncing = true;
+                    lock.unlock();
+                    IOException failure = null;
+                    try {
+                        forceQuietlyIfClosed(channel);
+                    } catch (IOException e) {
+                        failure = e;
+                    } finally {
+                        lock.lock();
+                        syncing = false;
+                        forced.signalAll();
+                    }
+                    
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    synced = Math.max(synced, covered);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
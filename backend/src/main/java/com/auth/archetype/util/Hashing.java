@@ -0,0 +1,27 @@
+package com.auth.archetype.util;
+
+/**
+ * Shared non-cryptographic string hashing for the in-memory probabilistic structures
+ */
+public final class Hashing {
+    
+    private Hashing() {
+    }
+    
+    /**
+     * 64-bit FNV-1a over the chars, finished with the MurmurHash3 mixer so both halves are
+     * usable as independent 32-bit hashes
+     */
+    public static long hash64(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
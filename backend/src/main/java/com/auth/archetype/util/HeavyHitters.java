@@ -0,0 +1,116 @@
+package com.auth.archetype.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The k most frequent keys of a stream over a sliding window: a {@link SlidingCountMinSketch}
+ * for the counts and a min-heap of the current top k.
+ * 
+ * Most events only touch the sketch. The heap lock is taken only by a key whose estimate
+ * beats the smallest count in a full heap, which for a stream of mostly distinct keys is
+ * rare.
+ */
+public class HeavyHitters {
+    
+    private final SlidingCountMinSketch sketch;
+    private final int k;
+    
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.count));
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    
+    // Smallest count in the heap once it is full, 0 before; read without the lock
+    private volatile long admissionCount;
+    
+    private static class Candidate {
+        
+        final String key;
+        long count;
+        
+        Candidate(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+    
+    public HeavyHitters(SlidingCountMinSketch sketch, int k) {
+        this.sketch = sketch;
+        this.k = k;
+    }
+    
+    /**
+     * Count one event for a key
+     * 
+     * @return the key's estimated count over the window, this event included
+     */
+    public long add(String key) {
+        long estimate = sketch.add(key);
+        if (estimate > admissionCount) {
+            offer(key, estimate);
+        }
+        return estimate;
+    }
+    
+    /**
+     * @return the current top keys with their estimated counts, largest first
+     */
+    public synchronized Map<String, Long> top() {
+        List<Candidate> sorted = new ArrayList<>(heap);
+        sorted.sort(Comparator.comparingLong((Candidate c) -> c.count).reversed());
+        
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Candidate candidate : sorted) {
+            top.put(candidate.key, candidate.count);
+        }
+        return top;
+    }
+    
+    /**
+     * Advance the sketch's window and re-estimate the heap, dropping keys no longer seen
+     */
+    public synchronized void rotate() {
+        sketch.rotate();
+        
+        List<Candidate> current = new ArrayList<>(heap);
+        heap.clear();
+        candidates.clear();
+        for (Candidate candidate : current) {
+            candidate.count = sketch.estimate(candidate.key);
+            if (candidate.count > 0) {
+                heap.add(candidate);
+                candidates.put(candidate.key, candidate);
+            }
+        }
+        updateAdmissionCount();
+    }
+    
+    // Private helper methods
+    
+    private synchronized void offer(String key, long estimate) {
+        Candidate candidate = candidates.get(key);
+        if (candidate != null) {
+            heap.remove(candidate);
+            candidate.count = estimate;
+            heap.add(candidate);
+        } else if (heap.size() < k) {
+            candidate = new Candidate(key, estimate);
+            heap.add(candidate);
+            candidates.put(key, candidate);
+        } else if (estimate > heap.peek().count) {
+            candidates.remove(heap.poll().key);
+            candidate = new Candidate(key, estimate);
+            heap.add(candidate);
+            candidates.put(key, candidate);
+        }
+        updateAdmissionCount();
+    }
+    
+    private void updateAdmissionCount() {
+        admissionCount = heap.size() < k ? 0 : heap.peek().count;
+    }
+}
@@ -0,0 +1,110 @@
+package com.auth.archetype.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, for percentiles of a hot path without
+ * keeping samples.
+ * 
+ * Buckets are log-linear: each power of two is split into {@value #SUB_BUCKETS} equal parts,
+ * so a reported percentile is the upper bound of its bucket and at most 1/8 above the true
+ * value. Recording is one atomic increment. Counts accumulate until {@link #reset()}.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+    
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return an upper bound on the given quantile in nanoseconds, or 0 if nothing was recorded
+     */
+    public long quantile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+    
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+    
+    /**
+     * Count, mean, p50, p90, p99 and max, in microseconds
+     */
+    public Map<String, Object> getStats() {
+        long recorded = count.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", recorded);
+        stats.put("meanMicros", recorded > 0 ? totalNanos.sum() / recorded / 1000 : 0);
+        stats.put("p50Micros", quantile(0.50) / 1000);
+        stats.put("p90Micros", quantile(0.90) / 1000);
+        stats.put("p99Micros", quantile(0.99) / 1000);
+        stats.put("maxMicros", maxNanos.get() / 1000);
+        return stats;
+    }
+    
+    // Private helper methods
+    
+    // Values below SUB_BUCKETS get a bucket each; above, the top bit picks the power of two
+    // and the next SUB_BUCKET_BITS bits the part of it
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,40 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limit for a log statement that can fire on every request, such as a failed login.
+ * Up to a fixed number of lines per second get through; the rest are counted so the next
+ * line let through can say how many were dropped.
+ */
+public class LogSampler {
+    
+    private final int perSecond;
+    private final AtomicLong second = new AtomicLong();
+    private final AtomicInteger inSecond = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+    
+    public LogSampler(int perSecond) {
+        this.perSecond = perSecond;
+    }
+    
+    /**
+     * @return the number of lines dropped since the last one let through if this one should be
+     *         logged, or -1 if it should be dropped
+     */
+    public long sample() {
+        long now = System.currentTimeMillis() / 1000;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now)) {
+            inSecond.set(0);
+        }
+        
+        if (inSecond.incrementAndGet() <= perSecond) {
+            return suppressed.sumThenReset();
+        }
+        suppressed.increment();
+        return -1;
+    }
+}
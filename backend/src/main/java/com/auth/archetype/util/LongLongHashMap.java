@@ -0,0 +1,150 @@
+package com.auth.archetype.util;
+
+/**
+ * Open-addressing hash map from long to long with linear probing, storing entries in two
+ * primitive arrays. About 16 bytes per entry at the default load, against roughly ten times
+ * that for a {@code HashMap<Long, Long>}.
+ * 
+ * Key 0 is reserved as the empty marker. Not thread-safe, but a lookup racing a writer always
+ * terminates, though it may answer wrongly or throw, so it can back an optimistic read that is
+ * validated afterwards.
+ */
+public class LongLongHashMap {
+    
+    private static final float LOAD_FACTOR = 0.6f;
+    
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+    
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int resizeAt;
+    
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the value for the key, or {@code missing} if there is none
+     */
+    public long get(long key, long missing) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : missing;
+    }
+    
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+    
+    public void put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            allocate(keys.length << 1);
+        }
+    }
+    
+    /**
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return true;
+    }
+    
+    /**
+     * Call the consumer for every entry; it must not modify the map
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    // Private helper methods
+    
+    private int find(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        
+        // One read of the array: a resize swaps in a table that is never full
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        
+        keys = new long[capacity];
+        values = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+        
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+    
+    private static int mix(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
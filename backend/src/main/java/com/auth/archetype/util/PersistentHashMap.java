@@ -0,0 +1,310 @@
+package com.auth.archetype.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie. Every update returns a new map that shares all untouched
+ * branches with the old one, so an update copies at most one path of small nodes while any
+ * previously obtained map stays valid and unchanged. Safe to read from any number of threads.
+ * 
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+    
+    private final BitmapNode root;
+    private final int size;
+    
+    private PersistentHashMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int hash = hash(key);
+        Object node = root;
+        int shift = 0;
+        
+        while (true) {
+            if (node instanceof BitmapNode bitmapNode) {
+                int bit = 1 << ((hash >>> shift) & MASK);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.slots[Integer.bitCount(bitmapNode.bitmap & (bit - 1))];
+                shift += BITS;
+            } else if (node instanceof Leaf leaf) {
+                return leaf.hash == hash && leaf.key.equals(key) ? (V) leaf.value : null;
+            } else {
+                CollisionNode collision = (CollisionNode) node;
+                if (collision.hash != hash) {
+                    return null;
+                }
+                for (Leaf leaf : collision.leaves) {
+                    if (leaf.key.equals(key)) {
+                        return (V) leaf.value;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+    
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * @return a map with the key bound to the value; this map if it already was
+     */
+    public PersistentHashMap<K, V> put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Keys and values must not be null");
+        }
+        
+        boolean[] added = new boolean[1];
+        BitmapNode newRoot = put(root, new Leaf(hash(key), key, value), 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+    
+    /**
+     * @return a map without the key; this map if the key was absent
+     */
+    public PersistentHashMap<K, V> remove(Object key) {
+        if (key == null) {
+            return this;
+        }
+        
+        Object newRoot = remove(root, hash(key), key, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(asBitmapRoot(newRoot, 0), size - 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(root, (BiConsumer<Object, Object>) action);
+    }
+    
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+    
+    // Private helper methods
+    
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    private static BitmapNode put(BitmapNode node, Leaf leaf, int shift, boolean[] added) {
+        int bit = 1 << ((leaf.hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            return node.withInserted(bit, index, leaf);
+        }
+        
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Leaf existing) {
+            if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+                if (existing.value == leaf.value) {
+                    return node;
+                }
+                replacement = leaf;
+            } else {
+                added[0] = true;
+                replacement = merge(existing, leaf, shift + BITS);
+            }
+        } else if (slot instanceof BitmapNode child) {
+            replacement = put(child, leaf, shift + BITS, added);
+        } else {
+            CollisionNode collision = (CollisionNode) slot;
+            if (collision.hash == leaf.hash) {
+                replacement = collision.with(leaf, added);
+            } else {
+                BitmapNode wrapper = new BitmapNode(1 << ((collision.hash >>> (shift + BITS)) & MASK), new Object[] { collision });
+                replacement = put(wrapper, leaf, shift + BITS, added);
+            }
+        }
+        
+        return replacement == slot ? node : node.withReplaced(index, replacement);
+    }
+    
+    private static Object merge(Leaf a, Leaf b, int shift) {
+        if (a.hash == b.hash) {
+            return new CollisionNode(a.hash, new Leaf[] { a, b });
+        }
+        
+        int fragmentA = (a.hash >>> shift) & MASK;
+        int fragmentB = (b.hash >>> shift) & MASK;
+        if (fragmentA == fragmentB) {
+            return new BitmapNode(1 << fragmentA, new Object[] { merge(a, b, shift + BITS) });
+        }
+        
+        Object[] slots = fragmentA < fragmentB ? new Object[] { a, b } : new Object[] { b, a };
+        return new BitmapNode((1 << fragmentA) | (1 << fragmentB), slots);
+    }
+    
+    /**
+     * @return the same node if nothing changed, null if the node became empty, otherwise the
+     *         replacement (a leaf when only one entry is left below a non-root node)
+     */
+    private static Object remove(BitmapNode node, int hash, Object key, int shift) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[index];
+        Object replacement;
+        
+        if (slot instanceof Leaf leaf) {
+            if (leaf.hash != hash || !leaf.key.equals(key)) {
+                return node;
+            }
+            replacement = null;
+        } else if (slot instanceof BitmapNode child) {
+            replacement = remove(child, hash, key, shift + BITS);
+            if (replacement == child) {
+                return node;
+            }
+        } else {
+            CollisionNode collision = (CollisionNode) slot;
+            replacement = collision.without(key);
+            if (replacement == collision) {
+                return node;
+            }
+        }
+        
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            BitmapNode shrunk = node.withRemoved(bit, index);
+            // Pull a lone leaf up so lookups stay short
+            if (shift > 0 && shrunk.slots.length == 1 && shrunk.slots[0] instanceof Leaf) {
+                return shrunk.slots[0];
+            }
+            return shrunk;
+        }
+        
+        if (shift > 0 && node.slots.length == 1 && replacement instanceof Leaf) {
+            return replacement;
+        }
+        return node.withReplaced(index, replacement);
+    }
+    
+    private static BitmapNode asBitmapRoot(Object node, int shift) {
+        if (node instanceof BitmapNode bitmapNode) {
+            return bitmapNode;
+        }
+        int hash = node instanceof Leaf leaf ? leaf.hash : ((CollisionNode) node).hash;
+        return new BitmapNode(1 << ((hash >>> shift) & MASK), new Object[] { node });
+    }
+    
+    private static void forEach(Object node, BiConsumer<Object, Object> action) {
+        if (node instanceof BitmapNode bitmapNode) {
+            for (Object slot : bitmapNode.slots) {
+                forEach(slot, action);
+            }
+        } else if (node instanceof Leaf leaf) {
+            action.accept(leaf.key, leaf.value);
+        } else {
+            for (Leaf leaf : ((CollisionNode) node).leaves) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+    }
+    
+    private record Leaf(int hash, Object key, Object value) {
+    }
+    
+    private record BitmapNode(int bitmap, Object[] slots) {
+        
+        BitmapNode withInserted(int bit, int index, Object slot) {
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new BitmapNode(bitmap | bit, copy);
+        }
+        
+        BitmapNode withReplaced(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new BitmapNode(bitmap, copy);
+        }
+        
+        BitmapNode withRemoved(int bit, int index) {
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+    }
+    
+    private record CollisionNode(int hash, Leaf[] leaves) {
+        
+        CollisionNode with(Leaf leaf, boolean[] added) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    if (leaves[i].value == leaf.value) {
+                        return this;
+                    }
+                    Leaf[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            added[0] = true;
+            Leaf[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = leaf;
+            return new CollisionNode(hash, copy);
+        }
+        
+        // Returns this if absent, or the remaining leaf when only one is left
+        Object without(Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            return this;
+        }
+    }
+}
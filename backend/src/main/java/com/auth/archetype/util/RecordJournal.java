@@ -0,0 +1,274 @@
+package com.auth.archetype.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only record log backing a journaled in-memory store.
+ * 
+ * Each record is framed as {@code [int length][int crc32c][byte op][payload]}, where the
+ * checksum covers the op byte and the payload. The active log is replayed on top of the
+ * store's last snapshot at startup; compaction rotates it aside so a new snapshot can be
+ * written while writers keep appending to a fresh log.
+ */
+@Slf4j
+public class RecordJournal {
+
+    private static final int HEADER_SIZE = 9;
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    
+    private final FileStorageUtil fileStorageUtil;
+    private final String filePath;
+    private final String name;
+    
+    private FileChannel channel;
+    private long size;
+    
+    /**
+     * @param fileStorageUtil storage used for durability settings
+     * @param filePath path of the active log; the rotated log sits next to it
+     * @param name used in log messages, e.g. "user journal"
+     */
+    public RecordJournal(FileStorageUtil fileStorageUtil, String filePath, String name) {
+        this.fileStorageUtil = fileStorageUtil;
+        this.filePath = filePath;
+        this.name = name;
+    }
+    
+    /**
+     * Callback applied to every intact record during replay
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void apply(byte op, byte[] payload) throws IOException;
+    }
+    
+    /**
+     * Replay the rotated log left by an unfinished compaction, then the active log.
+     * A torn or corrupt tail on the active log is truncated away.
+     * 
+     * @param handler callback for each record, in write order
+     * @return number of records replayed
+     * @throws IOException if a log cannot be read
+     */
+    public synchronized int replay(RecordHandler handler) throws IOException {
+        return replayFile(rotatedPath(), handler, false) + replayFile(activePath(), handler, true);
+    }
+    
+    /**
+     * Open the active log for appending
+     * 
+     * @throws IOException if the log cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        
+        Path path = activePath();
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        log.info("Opened {} {} ({} bytes)", name, path, size);
+    }
+    
+    /**
+     * Append one record to the active log
+     * 
+     * @param op record type, one of the {@code OP_} constants
+     * @param payload record body
+     * @throws IOException if the append fails
+     */
+    public synchronized void append(byte op, byte[] payload) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException(name + " is not open");
+        }
+        
+        CRC32C crc = new CRC32C();
+        crc.update(op);
+        crc.update(payload);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(op)
+                .put(payload)
+                .flip();
+        
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size += HEADER_SIZE + payload.length;
+    }
+    
+    /**
+     * Make previous appends durable according to the configured file durability level.
+     * Called outside of any writer lock so concurrent appenders can share an fsync.
+     * 
+     * @throws IOException if the fsync fails
+     */
+    public void sync() throws IOException {
+        FileChannel current;
+        synchronized (this) {
+            current = channel;
+        }
+        
+        if (current != null) {
+            fileStorageUtil.sync(current);
+        }
+    }
+    
+    /**
+     * @return current size of the active log in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+    
+    /**
+     * Move the active log aside and start a fresh one. Records appended before this call
+     * live in the rotated log until {@link #discardRotated()} is called once a snapshot
+     * covering them has been written.
+     * 
+     * @return true if there was anything to rotate
+     * @throws IOException if the rotation fails
+     */
+    public synchronized boolean rotate() throws IOException {
+        if (channel == null || size == 0) {
+            return false;
+        }
+        
+        Path active = activePath();
+        Path rotated = rotatedPath();
+        
+        if (Files.exists(rotated)) {
+            // A previous compaction never finished: fold the active log into the rotated one
+            try (FileChannel target = FileChannel.open(rotated, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 FileChannel source = FileChannel.open(active, StandardOpenOption.READ)) {
+                long position = 0;
+                long length = source.size();
+                while (position < length) {
+                    position += source.transferTo(position, length - position, target);
+                }
+                target.force(false);
+            }
+            channel.truncate(0);
+        } else {
+            channel.force(false);
+            channel.close();
+            Files.move(active, rotated, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(active, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        
+        size = 0;
+        return true;
+    }
+    
+    /**
+     * Delete the rotated log once its records are covered by a snapshot
+     * 
+     * @throws IOException if deletion fails
+     */
+    public synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath());
+    }
+    
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.error("Error closing {}", name, e);
+        }
+        channel = null;
+    }
+    
+    // Private helper methods
+    
+    private Path activePath() {
+        return Paths.get(filePath);
+    }
+    
+    private Path rotatedPath() {
+        return Paths.get(filePath + ".compacting");
+    }
+    
+    private int replayFile(Path path, RecordHandler handler, boolean truncateTornTail) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        
+        int count = 0;
+        long validLength = 0;
+        
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                
+                if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                    log.warn("Invalid record length {} in journal {} at offset {}", length, path, validLength);
+                    break;
+                }
+                
+                byte[] payload = new byte[length];
+                int checksum;
+                byte op;
+                try {
+                    checksum = data.readInt();
+                    op = data.readByte();
+                    data.readFully(payload);
+                } catch (EOFException e) {
+                    log.warn("Truncated record in journal {} at offset {}", path, validLength);
+                    break;
+                }
+                
+                CRC32C crc = new CRC32C();
+                crc.update(op);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Checksum mismatch in journal {} at offset {}", path, validLength);
+                    break;
+                }
+                
+                handler.apply(op, payload);
+                validLength += HEADER_SIZE + length;
+                count++;
+            }
+        }
+        
+        if (truncateTornTail && validLength < Files.size(path)) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                file.truncate(validLength);
+            }
+            log.warn("Truncated journal {} to {} bytes after a torn tail", path, validLength);
+        }
+        
+        log.info("Replayed {} records from journal {}", count, path);
+        return count;
+    }
+}
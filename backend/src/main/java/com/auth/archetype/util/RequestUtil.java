@@ -0,0 +1,24 @@
+package com.auth.archetype.util;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Access to the current HTTP request from code that is not handed it, such as services
+ */
+public final class RequestUtil {
+    
+    private RequestUtil() {
+    }
+    
+    /**
+     * @return the client address of the request being handled on this thread, or null outside
+     *         of a request
+     */
+    public static String clientIp() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, over a fixed ring of
+ * slots that is allocated once.
+ * 
+ * Each slot carries a sequence number telling whose turn it is: a producer may fill slot
+ * {@code i} on lap {@code n} when its sequence is {@code n}, the consumer may take it once the
+ * producer has set it to {@code n + 1}, and handing it back sets it to the next lap. Producers
+ * claim positions with one CAS on the tail and never wait on each other; a full ring makes
+ * {@link #offer(Object)} fail rather than block, leaving the overflow policy to the caller.
+ */
+public class RingBuffer<E> {
+    
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Only written by the consumer; volatile so size() can be read from any thread
+    private volatile long head;
+    
+    /**
+     * @param capacity number of slots, rounded up to a power of two of at least two; with a
+     *        single slot a filled slot's sequence would equal the next lap's position
+     */
+    public RingBuffer(int capacity) {
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.elements = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Add an element if there is room. Safe to call from any number of threads.
+     * 
+     * @return false if the ring is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // The consumer has not freed this slot since the last lap
+                return false;
+            } else {
+                // Another producer claimed it first
+                position = tail.get();
+            }
+        }
+    }
+    
+    /**
+     * Hand up to {@code max} elements, oldest first, to a sink. Only one thread may drain.
+     * 
+     * @return the number of elements drained
+     */
+    public int drain(Consumer<? super E> sink, int max) {
+        long position = head;
+        int drained = 0;
+        try {
+            while (drained < max) {
+                int slot = (int) position & mask;
+                if (sequences.get(slot) != position + 1) {
+                    // Empty, or the next producer has claimed the slot but not filled it yet
+                    break;
+                }
+                E element = elements.get(slot);
+                elements.set(slot, null);
+                sequences.set(slot, position + capacity);
+                position++;
+                drained++;
+                sink.accept(element);
+            }
+        } finally {
+            head = position;
+        }
+        return drained;
+    }
+    
+    /**
+     * @return the number of claimed slots not yet drained; approximate while producers run
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,115 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-min sketch over a sliding window, for approximate per-key event counts in fixed
+ * memory however many distinct keys there are.
+ * 
+ * The window is split into sub-windows and {@link #rotate()} drops the oldest. Each counter
+ * keeps its sub-windows side by side, so summing one is a single cache line. An estimate is
+ * the minimum over the rows of that row's counter summed across sub-windows; it never
+ * undercounts and overcounts by at most a small fraction of all events in the window with
+ * high probability. Adding is lock-free: one hash and one atomic increment per row.
+ */
+public class SlidingCountMinSketch {
+    
+    private final int depth;
+    private final int width;
+    private final int windows;
+    private final AtomicIntegerArray counters;
+    private final LongAdder[] totals;
+    private volatile int current;
+    
+    /**
+     * @param depth rows, i.e. independent hashes; the error probability falls as 2^-depth
+     * @param width counters per row, rounded up to a power of two; the error falls as 1/width
+     * @param windows number of sub-windows the sliding window is split into
+     */
+    public SlidingCountMinSketch(int depth, int width, int windows) {
+        this.depth = depth;
+        this.width = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.windows = windows;
+        this.counters = new AtomicIntegerArray(windows * depth * this.width);
+        this.totals = new LongAdder[windows];
+        for (int i = 0; i < windows; i++) {
+            totals[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Count one event for a key
+     * 
+     * @return the key's estimated count over the window, this event included
+     */
+    public long add(CharSequence key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int window = current;
+        totals[window].increment();
+        
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(h1, h2, row);
+            counters.incrementAndGet(cell + window);
+            estimate = Math.min(estimate, sum(cell));
+        }
+        return estimate;
+    }
+    
+    /**
+     * @return the key's estimated count over the window
+     */
+    public long estimate(CharSequence key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sum(cell(h1, h2, row)));
+        }
+        return estimate;
+    }
+    
+    /**
+     * Average amount by which estimates exceed true counts: every counter also collects the
+     * events of the keys that collide with it, about the window's total over the row width
+     */
+    public long expectedOvercount() {
+        long total = 0;
+        for (LongAdder windowTotal : totals) {
+            total += windowTotal.sum();
+        }
+        return total / width;
+    }
+    
+    /**
+     * Start a new sub-window, forgetting the oldest. Meant for a single scheduler thread.
+     */
+    public void rotate() {
+        int next = (current + 1) % windows;
+        for (int i = next; i < counters.length(); i += windows) {
+            counters.set(i, 0);
+        }
+        totals[next].reset();
+        current = next;
+    }
+    
+    // Private helper methods
+    
+    // Index of the first sub-window of the key's counter in a row
+    private int cell(int h1, int h2, int row) {
+        return (row * width + ((h1 + row * h2) & (width - 1))) * windows;
+    }
+    
+    private long sum(int cell) {
+        long sum = 0;
+        for (int window = 0; window < windows; window++) {
+            sum += counters.get(cell + window);
+        }
+        return sum;
+    }
+}
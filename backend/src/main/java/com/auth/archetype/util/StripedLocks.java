@@ -0,0 +1,31 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared out by key hash. Threads working on different keys rarely meet on
+ * the same lock, so contention follows per-key activity instead of total traffic, while memory
+ * stays constant however many keys exist.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    
+    /**
+     * @param minStripes lower bound for the number of locks; rounded up to a power of two
+     */
+    public StripedLocks(int minStripes) {
+        int stripes = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        this.locks = new ReentrantLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    public ReentrantLock get(Object key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,81 @@
+package com.auth.archetype.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Hashed timing wheel of long IDs. Scheduling is O(1) and each tick only touches one bucket,
+ * so expiring millions of entries never needs a sorted structure or a full scan.
+ * 
+ * Buckets are primitive arrays. A deadline further out than one revolution lands in the bucket
+ * it shares with an earlier deadline and is handed back early; callers re-check the real
+ * deadline and reschedule, which also covers deadlines that moved since scheduling. Not
+ * thread-safe.
+ */
+public class TimingWheel {
+
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+    
+    private final long tickMillis;
+    private final long[][] buckets;
+    private final int[] counts;
+    private final int mask;
+    
+    // Next tick to be processed
+    private long cursor;
+    
+    /**
+     * @param tickMillis resolution of the wheel
+     * @param slots number of buckets, rounded up to a power of two
+     * @param nowMillis current time
+     */
+    public TimingWheel(long tickMillis, int slots, long nowMillis) {
+        int size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new long[size][];
+        this.counts = new int[size];
+        this.mask = size - 1;
+        this.cursor = nowMillis / tickMillis;
+    }
+    
+    /**
+     * Schedule an ID; deadlines in the past fire on the next advance
+     */
+    public void schedule(long id, long deadlineMillis) {
+        long tick = Math.max(cursor, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        int slot = (int) (tick & mask);
+        
+        long[] bucket = buckets[slot];
+        if (bucket == null) {
+            bucket = buckets[slot] = new long[INITIAL_BUCKET_CAPACITY];
+        } else if (counts[slot] == bucket.length) {
+            long[] grown = new long[bucket.length << 1];
+            System.arraycopy(bucket, 0, grown, 0, bucket.length);
+            bucket = buckets[slot] = grown;
+        }
+        bucket[counts[slot]++] = id;
+    }
+    
+    /**
+     * Hand every ID in the buckets passed since the last call to the consumer, at most one
+     * revolution's worth. The consumer may schedule again.
+     */
+    public void advance(long nowMillis, LongConsumer due) {
+        long target = nowMillis / tickMillis;
+        long stop = Math.min(target, cursor + mask);
+        
+        while (cursor <= stop) {
+            int slot = (int) (cursor & mask);
+            long[] bucket = buckets[slot];
+            int count = counts[slot];
+            
+            // Detach first so rescheduling into the same slot cannot clobber what we iterate
+            buckets[slot] = null;
+            counts[slot] = 0;
+            cursor++;
+            
+            for (int i = 0; i < count; i++) {
+                due.accept(bucket[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.auth.archetype.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free table of token buckets keyed by string, e.g. a client IP.
+ * 
+ * Each bucket is one long: a 24-bit key fingerprint and the bucket's theoretical arrival time
+ * (GCRA), i.e. the moment it will be full again, in milliseconds since the table was created.
+ * That single timestamp is equivalent to a token count plus a last-refill time, so a take is
+ * one compare-and-set. A bucket whose time has passed is full and carries no information,
+ * which is what {@link #sweep(long)} clears.
+ * 
+ * The table is set-associative: a key may only live in the eight slots of its set, one cache
+ * line. When a set is full the bucket closest to full is evicted, so memory stays fixed at
+ * eight bytes a slot and an eviction only ever forgives a little. Two keys that share a set
+ * and a fingerprint share a bucket, which can only make the limit stricter for them.
+ */
+public class TokenBucketTable {
+    
+    private static final int WAYS = 8;
+    private static final int FINGERPRINT_BITS = 24;
+    private static final long TIME_MASK = (1L << (64 - FINGERPRINT_BITS)) - 1;
+    
+    private final AtomicLongArray slots;
+    private final int setMask;
+    private final long epochMillis;
+    private final long intervalMillis;
+    private final long toleranceMillis;
+    
+    /**
+     * @param capacity number of buckets held, rounded up to a power of two
+     * @param permitsPerMinute sustained rate
+     * @param burst permits available to an idle key at once
+     * @param nowMillis current time
+     */
+    public TokenBucketTable(int capacity, int permitsPerMinute, int burst, long nowMillis) {
+        int wantedSets = Math.max(1, (capacity + WAYS - 1) / WAYS);
+        int sets = wantedSets == 1 ? 1 : Integer.highestOneBit(wantedSets - 1) << 1;
+        this.slots = new AtomicLongArray(sets * WAYS);
+        this.setMask = sets - 1;
+        this.epochMillis = nowMillis;
+        this.intervalMillis = Math.max(1, 60_000L / Math.max(1, permitsPerMinute));
+        this.toleranceMillis = intervalMillis * (Math.max(1, burst) - 1);
+    }
+    
+    /**
+     * Take one permit from a key's bucket
+     * 
+     * @return 0 if the permit was granted, otherwise the milliseconds until one is available
+     */
+    public long tryAcquire(CharSequence key, long nowMillis) {
+        long hash = Hashing.hash64(key);
+        int base = ((int) hash & setMask) * WAYS;
+        long fingerprint = fingerprint(hash);
+        long now = Math.max(0, nowMillis - epochMillis);
+        
+        while (true) {
+            int index = find(base, fingerprint);
+            if (index < 0) {
+                // A new key starts with a full bucket and takes its first permit
+                if (insert(base, fingerprint, now)) {
+                    return 0;
+                }
+                continue;
+            }
+            
+            long slot = slots.get(index);
+            if (fingerprintOf(slot) != fingerprint) {
+                // Evicted or swept between the scan and the read
+                continue;
+            }
+            
+            long arrival = Math.max(timeOf(slot), now);
+            if (arrival - now > toleranceMillis) {
+                return arrival - now - toleranceMillis;
+            }
+            if (slots.compareAndSet(index, slot, pack(fingerprint, arrival + intervalMillis))) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Clear buckets that have refilled completely
+     * 
+     * @return number of buckets cleared
+     */
+    public int sweep(long nowMillis) {
+        long now = nowMillis - epochMillis;
+        int cleared = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long slot = slots.get(i);
+            if (slot != 0 && timeOf(slot) <= now && slots.compareAndSet(i, slot, 0)) {
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+    
+    /**
+     * @return number of buckets in use; a scan, so for statistics only
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+    
+    public int capacity() {
+        return slots.length();
+    }
+    
+    // Private helper methods
+    
+    private int find(int base, long fingerprint) {
+        for (int i = base; i < base + WAYS; i++) {
+            if (fingerprintOf(slots.get(i)) == fingerprint) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // Claim an empty slot, or else the one that will be full soonest
+    private boolean insert(int base, long fingerprint, long now) {
+        int victim = base;
+        long victimSlot = slots.get(base);
+        for (int i = base; i < base + WAYS && victimSlot != 0; i++) {
+            long slot = slots.get(i);
+            if (slot == 0 || timeOf(slot) < timeOf(victimSlot)) {
+                victim = i;
+                victimSlot = slot;
+            }
+        }
+        return slots.compareAndSet(victim, victimSlot, pack(fingerprint, now + intervalMillis));
+    }
+    
+    private static long pack(long fingerprint, long time) {
+        return fingerprint << (64 - FINGERPRINT_BITS) | time & TIME_MASK;
+    }
+    
+    private static long fingerprintOf(long slot) {
+        return slot >>> (64 - FINGERPRINT_BITS);
+    }
+    
+    private static long timeOf(long slot) {
+        return slot & TIME_MASK;
+    }
+    
+    // Taken from the high bits, which the set index does not use; never 0, which marks an empty slot
+    private static long fingerprint(long hash) {
+        long fingerprint = hash >>> (64 - FINGERPRINT_BITS);
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+}
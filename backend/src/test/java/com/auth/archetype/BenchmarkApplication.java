@@ -0,0 +1,88 @@
+package com.auth.archetype;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * The whole service started in-process over a scratch storage directory, for benchmarks that
+ * measure a request path end to end. Listens on a random port; throttling is off so the
+ * benchmark measures the path rather than the limiter.
+ */
+public final class BenchmarkApplication implements AutoCloseable {
+    
+    public static final String ADMIN_USERNAME = "admin";
+    public static final String ADMIN_PASSWORD = "admin-password";
+    
+    private final Path directory;
+    private final ServletWebServerApplicationContext context;
+    
+    private BenchmarkApplication(Path directory, ServletWebServerApplicationContext context) {
+        this.directory = directory;
+        this.context = context;
+    }
+    
+    /**
+     * @param overrides properties replacing or adding to the benchmark defaults
+     */
+    public static BenchmarkApplication start(Map<String, Object> overrides) throws IOException {
+        Path directory = Files.createTempDirectory("auth-benchmark");
+        
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("jwt.secret", "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret");
+        properties.put("jwt.expiration", 900_000);
+        properties.put("jwt.refresh-expiration", 604_800_000);
+        properties.put("app.file.storage.path", directory.toString());
+        properties.put("app.file.users", "users.json");
+        properties.put("app.file.biometrics", "biometrics.json");
+        properties.put("app.cors.allowed-origins", "http://localhost");
+        properties.put("app.cors.allowed-methods", "GET,POST");
+        properties.put("app.cors.allowed-headers", "*");
+        properties.put("app.cors.max-age", 3600);
+        properties.put("app.admin.username", ADMIN_USERNAME);
+        properties.put("app.admin.password", ADMIN_PASSWORD);
+        properties.put("app.admin.firstName", "Admin");
+        properties.put("app.admin.lastName", "User");
+        properties.put("app.admin.email", "admin@example.com");
+        properties.put("app.rate-limit.enabled", false);
+        properties.put("app.stuffing.enabled", false);
+        properties.putAll(overrides);
+        
+        SpringApplication application = new SpringApplication(AuthServiceApplication.class);
+        application.setDefaultProperties(properties);
+        try {
+            return new BenchmarkApplication(directory,
+                    (ServletWebServerApplicationContext) application.run());
+        } catch (RuntimeException e) {
+            FileSystemUtils.deleteRecursively(directory);
+            throw e;
+        }
+    }
+    
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+    
+    public int port() {
+        return context.getWebServer().getPort();
+    }
+    
+    public Path directory() {
+        return directory;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+}
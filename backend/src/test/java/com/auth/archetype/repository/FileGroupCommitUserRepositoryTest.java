@@ -0,0 +1,24 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+
+import com.auth.archetype.util.FileStorageUtil;
+
+/**
+ * Snapshot mode under GROUP_COMMIT, where writers wait for the shared fsync only after
+ * releasing their locks
+ */
+class FileGroupCommitUserRepositoryTest extends UserRepositoryContractTest {
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        FileStorageUtil fileStorageUtil = RepositoryFixtures.fileStorage(directory, "group-commit");
+        return RepositoryFixtures.fileRepository(fileStorageUtil, new UserJournal(fileStorageUtil), "snapshot", "json",
+                eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+        ((FileUserRepository) repository).shutdown();
+    }
+}
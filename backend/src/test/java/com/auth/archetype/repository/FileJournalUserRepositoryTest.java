@@ -0,0 +1,23 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+
+import com.auth.archetype.util.FileStorageUtil;
+
+class FileJournalUserRepositoryTest extends UserRepositoryContractTest {
+    
+    private UserJournal journal;
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        FileStorageUtil fileStorageUtil = RepositoryFixtures.fileStorage(directory);
+        journal = new UserJournal(fileStorageUtil);
+        return RepositoryFixtures.fileRepository(fileStorageUtil, journal, "journal", "json", eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+        ((FileUserRepository) repository).shutdown();
+        journal.close();
+    }
+}
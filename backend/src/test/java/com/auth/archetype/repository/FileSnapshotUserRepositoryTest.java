@@ -0,0 +1,21 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+
+import com.auth.archetype.util.FileStorageUtil;
+
+class FileSnapshotUserRepositoryTest extends UserRepositoryContractTest {
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        FileStorageUtil fileStorageUtil = RepositoryFixtures.fileStorage(directory);
+        // Never opened in snapshot mode
+        return RepositoryFixtures.fileRepository(fileStorageUtil, new UserJournal(fileStorageUtil), "snapshot", "json",
+                eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+        ((FileUserRepository) repository).shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.auth.archetype.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.FileStorageUtil;
+
+class FileUserRepositoryCompactionTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void failedSnapshotKeepsRotatedJournalForReplay() throws Exception {
+        FileStorageUtil fileStorageUtil = RepositoryFixtures.fileStorage(directory);
+        Path rotated = Paths.get(fileStorageUtil.getUsersJournalFilePath() + ".compacting");
+        Path snapshot = Paths.get(fileStorageUtil.getUsersFilePath());
+        
+        UserJournal journal = new UserJournal(fileStorageUtil);
+        FileUserRepository repository = RepositoryFixtures.fileRepository(fileStorageUtil, journal, "journal");
+        for (int i = 0; i < 3; i++) {
+            repository.save(RepositoryFixtures.newUser("user" + i));
+        }
+        
+        // A non-empty directory where the snapshot goes makes the snapshot rename fail
+        Path blocker = Files.createDirectories(snapshot.resolve("blocker"));
+        ReflectionTestUtils.invokeMethod(repository, "compactJournal");
+        assertThat(rotated).exists();
+        
+        repository.shutdown();
+        journal.close();
+        FileSystemUtils.deleteRecursively(blocker.getParent());
+        
+        UserJournal reopenedJournal = new UserJournal(fileStorageUtil);
+        FileUserRepository reopened = RepositoryFixtures.fileRepository(fileStorageUtil, reopenedJournal, "journal");
+        assertThat(reopened.findAll()).extracting(User::getUsername)
+                .containsExactlyInAnyOrder("user0", "user1", "user2");
+        
+        // Once a snapshot is written the rotated log goes, and nothing is lost with it
+        reopened.save(RepositoryFixtures.newUser("user3"));
+        ReflectionTestUtils.invokeMethod(reopened, "compactJournal");
+        assertThat(rotated).doesNotExist();
+        assertThat(snapshot).isRegularFile();
+        reopened.shutdown();
+        reopenedJournal.close();
+        
+        UserJournal finalJournal = new UserJournal(fileStorageUtil);
+        FileUserRepository restarted = RepositoryFixtures.fileRepository(fileStorageUtil, finalJournal, "journal");
+        assertThat(restarted.findAll()).hasSize(4);
+        restarted.shutdown();
+        finalJournal.close();
+    }
+}
@@ -0,0 +1,16 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+
+class H2UserRepositoryTest extends UserRepositoryContractTest {
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        return RepositoryFixtures.h2Repository(RepositoryFixtures.fileStorage(directory), eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+        ((H2UserRepository) repository).shutdown();
+    }
+}
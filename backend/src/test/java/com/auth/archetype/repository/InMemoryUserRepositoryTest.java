@@ -0,0 +1,20 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+
+class InMemoryUserRepositoryTest extends UserRepositoryContractTest {
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        return RepositoryFixtures.memoryRepository(eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+    }
+    
+    @Override
+    protected boolean persistent() {
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.auth.archetype.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.model.User;
+
+class MappedUserRepositoryTest extends UserRepositoryContractTest {
+    
+    @Override
+    protected UserRepository open(Path directory) {
+        return RepositoryFixtures.mappedRepository(RepositoryFixtures.fileStorage(directory), eventPublisher);
+    }
+    
+    @Override
+    protected void close(UserRepository repository) {
+        ((MappedUserRepository) repository).close();
+    }
+    
+    @Test
+    void tornRelocationUnderSyncLeavesThePreviousVersionLive() {
+        close(repository);
+        repository = RepositoryFixtures.mappedRepository(RepositoryFixtures.fileStorage(directory, "sync"));
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        long first = location(user.getId());
+        
+        repository.save(user);
+        long second = location(user.getId());
+        assertThat(second).isNotEqualTo(first);
+        
+        // As if power failed while the new copy was written, before the old one was marked dead
+        segment(first).put((int) first + 12, (byte) 1);
+        MappedByteBuffer segment = segment(second);
+        segment.putInt((int) second + 8, ~segment.getInt((int) second + 8));
+        close(repository);
+        
+        repository = open(directory);
+        
+        assertThat(repository.findById(user.getId())).get().extracting(User::getVersion).isEqualTo(1L);
+    }
+    
+    // Private helper methods
+    
+    @SuppressWarnings("unchecked")
+    private long location(String id) {
+        return ((Map<String, Long>) ReflectionTestUtils.getField(repository, "locations")).get(id);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private MappedByteBuffer segment(long location) {
+        return ((List<MappedByteBuffer>) ReflectionTestUtils.getField(repository, "segments")).get((int) (location >>> 32));
+    }
+}
@@ -0,0 +1,104 @@
+package com.auth.archetype.repository;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.FileStorageUtil;
+
+/**
+ * Builds storage engines outside of Spring, wired the way their configuration properties
+ * would wire them, over a caller-provided directory
+ */
+final class RepositoryFixtures {
+    
+    static final ApplicationEventPublisher NO_EVENTS = event -> {
+    };
+    
+    private RepositoryFixtures() {
+    }
+    
+    static FileStorageUtil fileStorage(Path directory) {
+        return fileStorage(directory, "none");
+    }
+    
+    /**
+     * @param durability "none", "async", "group-commit" or "sync"
+     */
+    static FileStorageUtil fileStorage(Path directory, String durability) {
+        FileStorageUtil fileStorageUtil = new FileStorageUtil(durability);
+        ReflectionTestUtils.setField(fileStorageUtil, "storagePath", directory.toString());
+        ReflectionTestUtils.setField(fileStorageUtil, "usersFileName", "users.json");
+        ReflectionTestUtils.setField(fileStorageUtil, "biometricsFileName", "biometrics.json");
+        fileStorageUtil.initStorageDirectories();
+        return fileStorageUtil;
+    }
+    
+    /**
+     * @param storageMode "snapshot" or "journal"
+     */
+    static FileUserRepository fileRepository(FileStorageUtil fileStorageUtil, UserJournal journal, String storageMode) {
+        return fileRepository(fileStorageUtil, journal, storageMode, "json");
+    }
+    
+    /**
+     * @param snapshotFormat "json" or "binary"
+     */
+    static FileUserRepository fileRepository(FileStorageUtil fileStorageUtil, UserJournal journal, String storageMode,
+            String snapshotFormat) {
+        return fileRepository(fileStorageUtil, journal, storageMode, snapshotFormat, NO_EVENTS);
+    }
+    
+    static FileUserRepository fileRepository(FileStorageUtil fileStorageUtil, UserJournal journal, String storageMode,
+            String snapshotFormat, ApplicationEventPublisher eventPublisher) {
+        FileUserRepository repository = new FileUserRepository(fileStorageUtil, journal, new UserBinaryCodec(), eventPublisher);
+        ReflectionTestUtils.setField(repository, "storageMode", storageMode);
+        ReflectionTestUtils.setField(repository, "snapshotFormat", snapshotFormat);
+        ReflectionTestUtils.setField(repository, "compactIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(repository, "compactThresholdBytes", 0L);
+        ReflectionTestUtils.setField(repository, "writeBehindEnabled", false);
+        ReflectionTestUtils.setField(repository, "writeBehindFlushIntervalMs", 1000L);
+        ReflectionTestUtils.setField(repository, "writeBehindBatchSize", 500);
+        ReflectionTestUtils.setField(repository, "syncLockout", true);
+        repository.init();
+        return repository;
+    }
+    
+    static InMemoryUserRepository memoryRepository() {
+        return memoryRepository(NO_EVENTS);
+    }
+    
+    static InMemoryUserRepository memoryRepository(ApplicationEventPublisher eventPublisher) {
+        return new InMemoryUserRepository(eventPublisher);
+    }
+    
+    static MappedUserRepository mappedRepository(FileStorageUtil fileStorageUtil) {
+        return mappedRepository(fileStorageUtil, NO_EVENTS);
+    }
+    
+    static MappedUserRepository mappedRepository(FileStorageUtil fileStorageUtil, ApplicationEventPublisher eventPublisher) {
+        MappedUserRepository repository = new MappedUserRepository(fileStorageUtil, new UserBinaryCodec(), eventPublisher, 1);
+        repository.init();
+        return repository;
+    }
+    
+    static H2UserRepository h2Repository(FileStorageUtil fileStorageUtil) {
+        return h2Repository(fileStorageUtil, NO_EVENTS);
+    }
+    
+    static H2UserRepository h2Repository(FileStorageUtil fileStorageUtil, ApplicationEventPublisher eventPublisher) {
+        H2UserRepository repository = new H2UserRepository(fileStorageUtil, new UserBinaryCodec(), eventPublisher);
+        ReflectionTestUtils.setField(repository, "url", "");
+        ReflectionTestUtils.setField(repository, "maxConnections", 16);
+        repository.init();
+        return repository;
+    }
+    
+    static User newUser(String username) {
+        return User.createNew(username, "{noop}secret", "First", "Last", username + "@example.com",
+                List.of("USER"), false);
+    }
+}
@@ -0,0 +1,91 @@
+package com.auth.archetype.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.auth.archetype.util.FileStorageUtil;
+
+/**
+ * Cold-start load time of a users snapshot in the JSON and the binary format. Each iteration
+ * opens a fresh {@link FileUserRepository} over the same snapshot, so it measures reading,
+ * decoding and indexing every user. The snapshot size of each format is printed once per
+ * trial.
+ * 
+ * The 5M run needs several GB of heap. Run with
+ * {@code mvn -Pbenchmark test -Djmh.args="SnapshotFormatBenchmark -p users=100000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SnapshotFormatBenchmark {
+    
+    @Param({"json", "binary"})
+    public String format;
+    
+    @Param({"100000", "1000000", "5000000"})
+    public int users;
+    
+    private Path directory;
+    private FileStorageUtil fileStorageUtil;
+    private FileUserRepository loaded;
+    
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        directory = Files.createTempDirectory("snapshot-format-benchmark");
+        fileStorageUtil = RepositoryFixtures.fileStorage(directory);
+        
+        // Index the users directly and write one snapshot, instead of one per save
+        FileUserRepository writer = RepositoryFixtures.fileRepository(
+                fileStorageUtil, new UserJournal(fileStorageUtil), "snapshot", format);
+        UserIndex index = (UserIndex) ReflectionTestUtils.getField(writer, "index");
+        for (int i = 0; i < users; i++) {
+            index.put(RepositoryFixtures.newUser("user" + i));
+        }
+        ReflectionTestUtils.invokeMethod(writer, "saveUsersToFile");
+        writer.shutdown();
+        
+        System.out.printf("%n%s snapshot of %d users: %d bytes%n",
+                format, users, Files.size(Paths.get(fileStorageUtil.getUsersFilePath())));
+    }
+    
+    @TearDown(Level.Iteration)
+    public void closeLoaded() {
+        if (loaded != null) {
+            loaded.shutdown();
+            loaded = null;
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+    
+    @Benchmark
+    public int load() {
+        loaded = RepositoryFixtures.fileRepository(fileStorageUtil, new UserJournal(fileStorageUtil), "snapshot", format);
+        return ((UserIndex) ReflectionTestUtils.getField(loaded, "index")).size();
+    }
+}
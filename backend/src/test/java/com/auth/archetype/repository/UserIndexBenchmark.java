@@ -0,0 +1,91 @@
+package com.auth.archetype.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.auth.archetype.model.User;
+
+/**
+ * Lookup latency of the user indexes behind {@link FileUserRepository} as the user count
+ * grows, next to the stream scan over a user list that the indexes replaced. Indexed lookups
+ * should stay flat from 1k to 1M users while the scan grows linearly.
+ * 
+ * Run with {@code mvn -Pbenchmark test -Djmh.args="UserIndexBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserIndexBenchmark {
+    
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int users;
+    
+    private UserIndex index;
+    private List<User> list;
+    private String[] ids;
+    private String[] usernames;
+    private String[] emails;
+    
+    @Setup(Level.Trial)
+    public void populate() {
+        index = new UserIndex();
+        list = new ArrayList<>(users);
+        ids = new String[users];
+        usernames = new String[users];
+        emails = new String[users];
+        for (int i = 0; i < users; i++) {
+            User user = RepositoryFixtures.newUser("user" + i);
+            index.put(user);
+            list.add(user);
+            ids[i] = user.getId();
+            usernames[i] = user.getUsername();
+            // Lookups normalize case and whitespace
+            emails[i] = user.getEmail().toUpperCase();
+        }
+    }
+    
+    @Benchmark
+    public User findById() {
+        return index.findById(ids[ThreadLocalRandom.current().nextInt(users)]);
+    }
+    
+    @Benchmark
+    public User findByUsername() {
+        return index.findByUsername(usernames[ThreadLocalRandom.current().nextInt(users)]);
+    }
+    
+    @Benchmark
+    public User findByEmail() {
+        return index.findByEmail(emails[ThreadLocalRandom.current().nextInt(users)]);
+    }
+    
+    /**
+     * The lookup the indexes replaced
+     */
+    @Benchmark
+    public User scanByUsername() {
+        String username = usernames[ThreadLocalRandom.current().nextInt(users)];
+        return list.stream()
+                .filter(user -> user.getUsername().equals(username))
+                .findFirst()
+                .orElse(null);
+    }
+}
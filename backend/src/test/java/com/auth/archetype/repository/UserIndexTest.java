@@ -0,0 +1,182 @@
+package com.auth.archetype.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+
+class UserIndexTest {
+    
+    private final UserIndex index = new UserIndex();
+    
+    @Test
+    void snapshotStaysAtItsPointInTime() {
+        User alice = RepositoryFixtures.newUser("alice");
+        index.put(alice);
+        UserIndex.Snapshot before = index.snapshot();
+        
+        User bob = RepositoryFixtures.newUser("bob");
+        index.put(bob);
+        index.remove(alice.getId());
+        
+        assertThat(before.size()).isEqualTo(1);
+        assertThat(before.get(alice.getId())).isNotNull();
+        assertThat(before.get(bob.getId())).isNull();
+        assertThat(index.snapshot().version()).isGreaterThan(before.version());
+        assertThat(index.findAll()).extracting(User::getUsername).containsExactly("bob");
+    }
+    
+    @Test
+    void callersCannotModifyIndexedUsers() {
+        User alice = RepositoryFixtures.newUser("alice");
+        index.put(alice);
+        
+        alice.setUsername("changed");
+        index.findById(alice.getId()).setEmail("changed@example.com");
+        
+        User stored = index.findById(alice.getId());
+        assertThat(stored.getUsername()).isEqualTo("alice");
+        assertThat(stored.getEmail()).isEqualTo("alice@example.com");
+    }
+    
+    @Test
+    void secondaryKeysFollowRenames() {
+        User alice = RepositoryFixtures.newUser("alice");
+        index.put(alice);
+        
+        alice.setUsername("alicia");
+        alice.setEmail(" Alicia@Example.com");
+        index.put(alice);
+        
+        assertThat(index.findByUsername("alice")).isNull();
+        assertThat(index.findByEmail("alice@example.com")).isNull();
+        assertThat(index.findByUsername("alicia").getId()).isEqualTo(alice.getId());
+        assertThat(index.findByEmail("alicia@example.com").getId()).isEqualTo(alice.getId());
+    }
+    
+    @Test
+    void putNextVersionStampsOnlyWhenTheExpectedVersionMatches() {
+        User alice = RepositoryFixtures.newUser("alice");
+        index.putNextVersion(alice, 0);
+        User stale = index.findById(alice.getId());
+        index.putNextVersion(alice, 1);
+        
+        assertThat(alice.getVersion()).isEqualTo(2);
+        assertThatThrownBy(() -> index.putNextVersion(stale, 1)).isInstanceOf(StaleUserException.class);
+        assertThatThrownBy(() -> index.putNextVersion(RepositoryFixtures.newUser("bob").toBuilder()
+                .id(alice.getId()).build(), 0)).isInstanceOf(StaleUserException.class);
+        assertThat(index.findById(alice.getId()).getVersion()).isEqualTo(2);
+        
+        index.putNextVersion(stale, UserIndex.ANY_VERSION);
+        assertThat(stale.getVersion()).isEqualTo(3);
+    }
+    
+    @Test
+    void concurrentCompareAndSetWritersNeverLoseAVersion() throws Exception {
+        User alice = RepositoryFixtures.newUser("alice");
+        index.putNextVersion(alice, 0);
+        int threads = 8;
+        int incrementsPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        while (true) {
+                            User user = index.findById(alice.getId());
+                            user.setFailedLoginAttempts(user.getFailedLoginAttempts() + 1);
+                            try {
+                                index.putNextVersion(user, user.getVersion());
+                                break;
+                            } catch (StaleUserException e) {
+                                // Lost the race; re-read and retry
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        User stored = index.findById(alice.getId());
+        assertThat(stored.getFailedLoginAttempts()).isEqualTo(threads * incrementsPerThread);
+        assertThat(stored.getVersion()).isEqualTo(1 + threads * incrementsPerThread);
+    }
+    
+    @Test
+    void scansNeverSeeTornStateUnderConcurrentWriters() throws Exception {
+        int writers = 4;
+        int usersPerWriter = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                writes.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < usersPerWriter; i++) {
+                        User user = RepositoryFixtures.newUser("w" + writer + "-" + i);
+                        index.put(user);
+                        if (i % 2 == 1) {
+                            index.remove(user.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            
+            List<Future<?>> scans = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                scans.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        UserIndex.Snapshot snapshot = index.snapshot();
+                        List<User> users = snapshot.users();
+                        assertThat(users).hasSize(snapshot.size()).doesNotContainNull();
+                        for (User user : users) {
+                            assertThat(snapshot.get(user.getId())).isSameAs(user);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            
+            start.countDown();
+            for (Future<?> write : writes) {
+                write.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> scan : scans) {
+                scan.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertThat(index.size()).isEqualTo(writers * usersPerWriter / 2);
+        assertThat(index.findAll()).allSatisfy(user ->
+                assertThat(index.findByUsername(user.getUsername()).getId()).isEqualTo(user.getId()));
+    }
+}
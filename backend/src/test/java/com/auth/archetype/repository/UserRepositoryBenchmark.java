@@ -0,0 +1,113 @@
+package com.auth.archetype.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import com.auth.archetype.model.User;
+import com.auth.archetype.util.FileStorageUtil;
+
+/**
+ * Throughput and latency of every storage engine over the same pre-populated user set.
+ * Throughput is reported in operations per millisecond and latency as sampled percentiles.
+ * 
+ * Run with {@code mvn -Pbenchmark test -Djmh.args="UserRepositoryBenchmark -t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRepositoryBenchmark {
+    
+    @Param({"file-snapshot", "file-journal", "memory", "mapped", "h2"})
+    public String engine;
+    
+    @Param({"1000"})
+    public int users;
+    
+    private Path directory;
+    private UserJournal journal;
+    private UserRepository repository;
+    private String[] ids;
+    private String[] usernames;
+    
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("user-repository-benchmark");
+        FileStorageUtil fileStorageUtil = RepositoryFixtures.fileStorage(directory);
+        journal = new UserJournal(fileStorageUtil);
+        repository = switch (engine) {
+            case "file-snapshot" -> RepositoryFixtures.fileRepository(fileStorageUtil, journal, "snapshot");
+            case "file-journal" -> RepositoryFixtures.fileRepository(fileStorageUtil, journal, "journal");
+            case "memory" -> RepositoryFixtures.memoryRepository();
+            case "mapped" -> RepositoryFixtures.mappedRepository(fileStorageUtil);
+            case "h2" -> RepositoryFixtures.h2Repository(fileStorageUtil);
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+        
+        ids = new String[users];
+        usernames = new String[users];
+        for (int i = 0; i < users; i++) {
+            User user = repository.save(RepositoryFixtures.newUser("user" + i));
+            ids[i] = user.getId();
+            usernames[i] = user.getUsername();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        switch (repository) {
+            case FileUserRepository file -> {
+                file.shutdown();
+                journal.close();
+            }
+            case MappedUserRepository mapped -> mapped.close();
+            case H2UserRepository h2 -> h2.shutdown();
+            default -> {
+            }
+        }
+        FileSystemUtils.deleteRecursively(directory);
+    }
+    
+    @Benchmark
+    public User findById() {
+        return repository.findById(ids[ThreadLocalRandom.current().nextInt(users)]).orElseThrow();
+    }
+    
+    @Benchmark
+    public User findByUsername() {
+        return repository.findByUsername(usernames[ThreadLocalRandom.current().nextInt(users)]).orElseThrow();
+    }
+    
+    @Benchmark
+    public User save() {
+        User user = repository.findById(ids[ThreadLocalRandom.current().nextInt(users)]).orElseThrow();
+        user.setLastName("Benchmark");
+        return repository.save(user);
+    }
+    
+    @Benchmark
+    public User recordLogin() {
+        return repository.recordLogin(ids[ThreadLocalRandom.current().nextInt(users)], "127.0.0.1", "password")
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,250 @@
+package com.auth.archetype.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.auth.archetype.exception.ResourceNotFoundException;
+import com.auth.archetype.exception.StaleUserException;
+import com.auth.archetype.model.User;
+
+/**
+ * Behaviour every storage engine must share. Each engine runs it through a subclass that
+ * knows how to open and close it over a fresh directory.
+ */
+abstract class UserRepositoryContractTest {
+    
+    @TempDir
+    Path directory;
+    
+    protected UserRepository repository;
+    
+    // Everything the engine under test published; pass it to the engine when opening it
+    protected final List<Object> events = new CopyOnWriteArrayList<>();
+    protected final ApplicationEventPublisher eventPublisher = events::add;
+    
+    /**
+     * Open the engine over the given directory, picking up anything stored there before
+     */
+    protected abstract UserRepository open(Path directory);
+    
+    protected abstract void close(UserRepository repository);
+    
+    /**
+     * @return whether users survive closing and re-opening the engine
+     */
+    protected boolean persistent() {
+        return true;
+    }
+    
+    @BeforeEach
+    void openRepository() {
+        repository = open(directory);
+    }
+    
+    @AfterEach
+    void closeRepository() {
+        close(repository);
+    }
+    
+    @Test
+    void savedUserIsFoundByEveryKey() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        assertThat(repository.findById(user.getId())).get().extracting(User::getUsername).isEqualTo("alice");
+        assertThat(repository.findByUsername("alice")).get().extracting(User::getId).isEqualTo(user.getId());
+        assertThat(repository.findByEmail("  ALICE@Example.com ")).get().extracting(User::getId).isEqualTo(user.getId());
+        assertThat(repository.findAll()).extracting(User::getId).containsExactly(user.getId());
+    }
+    
+    @Test
+    void unknownKeysAndNullsFindNothing() {
+        repository.save(RepositoryFixtures.newUser("alice"));
+        
+        assertThat(repository.findById("missing")).isEmpty();
+        assertThat(repository.findByUsername("bob")).isEmpty();
+        assertThat(repository.findByEmail("bob@example.com")).isEmpty();
+        assertThat(repository.findById(null)).isEmpty();
+        assertThat(repository.findByUsername(null)).isEmpty();
+        assertThat(repository.findByEmail(null)).isEmpty();
+    }
+    
+    @Test
+    void returnedUsersAreDetachedFromTheStore() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        repository.findById(user.getId()).orElseThrow().setFirstName("Changed");
+        user.setFirstName("Changed too");
+        
+        assertThat(repository.findById(user.getId())).get().extracting(User::getFirstName).isEqualTo("First");
+    }
+    
+    @Test
+    void everySaveStampsTheNextVersion() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        long first = user.getVersion();
+        
+        user.setFirstName("Changed");
+        repository.save(user);
+        
+        assertThat(first).isPositive();
+        assertThat(user.getVersion()).isEqualTo(first + 1);
+        assertThat(repository.findById(user.getId())).get().extracting(User::getVersion).isEqualTo(first + 1);
+    }
+    
+    @Test
+    void saveIfCurrentRejectsAStaleRead() {
+        String id = repository.save(RepositoryFixtures.newUser("alice")).getId();
+        User first = repository.findById(id).orElseThrow();
+        User second = repository.findById(id).orElseThrow();
+        
+        first.setFirstName("First writer");
+        repository.saveIfCurrent(first);
+        second.setFirstName("Second writer");
+        
+        assertThatThrownBy(() -> repository.saveIfCurrent(second)).isInstanceOf(StaleUserException.class);
+        assertThat(repository.findById(id)).get().extracting(User::getFirstName).isEqualTo("First writer");
+    }
+    
+    @Test
+    void saveIfCurrentCreatesOnlyOnce() {
+        User user = RepositoryFixtures.newUser("alice");
+        User duplicate = user.copy();
+        
+        repository.saveIfCurrent(user);
+        
+        assertThatThrownBy(() -> repository.saveIfCurrent(duplicate)).isInstanceOf(StaleUserException.class);
+        assertThat(repository.findAll()).hasSize(1);
+    }
+    
+    @Test
+    void updateAppliesTheChangeToTheLatestVersion() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        assertThat(repository.update(user.getId(), u -> u.setLastName("Updated"))).get()
+                .extracting(User::getVersion).isEqualTo(user.getVersion() + 1);
+        assertThat(repository.findById(user.getId())).get().extracting(User::getLastName).isEqualTo("Updated");
+        assertThat(repository.update("missing", u -> u.setLastName("Nobody"))).isEmpty();
+    }
+    
+    @Test
+    void concurrentUpdatesAreNeverLost() throws Exception {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        int threads = 8;
+        int updatesPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        try {
+            List<Future<?>> updates = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                updates.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < updatesPerThread; i++) {
+                        repository.update(user.getId(), u -> u.setFailedLoginAttempts(u.getFailedLoginAttempts() + 1));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> update : updates) {
+                update.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        User stored = repository.findById(user.getId()).orElseThrow();
+        assertThat(stored.getFailedLoginAttempts()).isEqualTo(threads * updatesPerThread);
+        assertThat(stored.getVersion()).isEqualTo(user.getVersion() + threads * updatesPerThread);
+    }
+    
+    @Test
+    void changedKeysMoveInTheSecondaryIndexes() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        user.setUsername("alicia");
+        user.setEmail("alicia@example.com");
+        repository.save(user);
+        
+        assertThat(repository.findByUsername("alice")).isEmpty();
+        assertThat(repository.findByEmail("alice@example.com")).isEmpty();
+        assertThat(repository.findByUsername("alicia")).get().extracting(User::getId).isEqualTo(user.getId());
+        assertThat(repository.findByEmail("alicia@example.com")).get().extracting(User::getId).isEqualTo(user.getId());
+    }
+    
+    @Test
+    void deleteRemovesTheUserFromEveryIndex() {
+        User alice = repository.save(RepositoryFixtures.newUser("alice"));
+        User bob = repository.save(RepositoryFixtures.newUser("bob"));
+        
+        repository.delete(alice);
+        repository.deleteById(bob.getId());
+        
+        assertThat(repository.findById(alice.getId())).isEmpty();
+        assertThat(repository.findByUsername("alice")).isEmpty();
+        assertThat(repository.findByEmail("bob@example.com")).isEmpty();
+        assertThat(repository.findAll()).isEmpty();
+        assertThatThrownBy(() -> repository.deleteById(bob.getId())).isInstanceOf(ResourceNotFoundException.class);
+    }
+    
+    @Test
+    void deletingAnAbsentUserPublishesNothing() {
+        User alice = repository.save(RepositoryFixtures.newUser("alice"));
+        repository.delete(alice);
+        assertThat(events).hasSize(2);
+        
+        repository.delete(alice);
+        
+        assertThat(events).hasSize(2);
+    }
+    
+    @Test
+    void loginBookkeepingGoesThroughUpdate() {
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        repository.lockAfterFailedLogins("alice", User.MAX_FAILED_LOGIN_ATTEMPTS);
+        assertThat(repository.findById(user.getId())).get().extracting(User::isAccountLocked).isEqualTo(true);
+        assertThat(repository.lockAfterFailedLogins("alice", User.MAX_FAILED_LOGIN_ATTEMPTS)).isEmpty();
+        
+        repository.recordLogin(user.getId(), "127.0.0.1", "password");
+        assertThat(repository.findById(user.getId())).get().extracting(User::getLastLoginIp).isEqualTo("127.0.0.1");
+    }
+    
+    @Test
+    void storedUsersSurviveAReopen() {
+        User alice = repository.save(RepositoryFixtures.newUser("alice"));
+        User bob = repository.save(RepositoryFixtures.newUser("bob"));
+        repository.update(alice.getId(), u -> u.setLastName("Reopened"));
+        repository.delete(bob);
+        
+        close(repository);
+        repository = open(directory);
+        
+        if (!persistent()) {
+            assertThat(repository.findAll()).isEmpty();
+            return;
+        }
+        User reopened = repository.findByUsername("alice").orElseThrow();
+        assertThat(reopened.getLastName()).isEqualTo("Reopened");
+        assertThat(reopened.getVersion()).isEqualTo(alice.getVersion() + 1);
+        assertThat(repository.findByEmail("alice@example.com")).isPresent();
+        assertThat(repository.findByUsername("bob")).isEmpty();
+        assertThat(repository.findAll()).hasSize(1);
+    }
+}
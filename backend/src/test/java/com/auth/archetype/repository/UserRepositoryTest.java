@@ -0,0 +1,59 @@
+package com.auth.archetype.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.auth.archetype.model.User;
+
+/**
+ * Default methods of {@link UserRepository}, over the in-memory engine
+ */
+class UserRepositoryTest {
+    
+    @Test
+    void updateReappliesTheChangeAfterLosingARace() {
+        AtomicInteger conflicts = new AtomicInteger(1);
+        InMemoryUserRepository repository = new InMemoryUserRepository(RepositoryFixtures.NO_EVENTS) {
+            
+            @Override
+            public User saveIfCurrent(User user) {
+                // Another writer slips in between the read and the first conditional save
+                if (conflicts.getAndDecrement() > 0) {
+                    User other = findById(user.getId()).orElseThrow();
+                    other.setFirstName("Other writer");
+                    save(other);
+                }
+                return super.saveIfCurrent(user);
+            }
+        };
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        AtomicInteger attempts = new AtomicInteger();
+        
+        User updated = repository.update(user.getId(), u -> {
+            attempts.incrementAndGet();
+            u.setLastName("This writer");
+        }).orElseThrow();
+        
+        assertThat(attempts).hasValue(2);
+        assertThat(updated.getVersion()).isEqualTo(user.getVersion() + 2);
+        User stored = repository.findById(user.getId()).orElseThrow();
+        assertThat(stored.getFirstName()).isEqualTo("Other writer");
+        assertThat(stored.getLastName()).isEqualTo("This writer");
+    }
+    
+    @Test
+    void lockAfterFailedLoginsLeavesLockedAccountsAlone() {
+        InMemoryUserRepository repository = RepositoryFixtures.memoryRepository();
+        User user = repository.save(RepositoryFixtures.newUser("alice"));
+        
+        assertThat(repository.lockAfterFailedLogins("alice", 5)).isPresent();
+        long lockedVersion = repository.findById(user.getId()).orElseThrow().getVersion();
+        
+        assertThat(repository.lockAfterFailedLogins("alice", 6)).isEmpty();
+        assertThat(repository.lockAfterFailedLogins("nobody", 5)).isEmpty();
+        assertThat(repository.findById(user.getId()).orElseThrow().getVersion()).isEqualTo(lockedVersion);
+    }
+}
@@ -0,0 +1,115 @@
+package com.auth.archetype.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.util.RingBuffer;
+
+class LoginEventQueueTest {
+    
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final FailedLoginTracker failedLogins = mock(FailedLoginTracker.class);
+    private LoginEventQueue queue;
+    
+    @Test
+    void failuresAreCountedWhateverTheOverflowPolicy() {
+        for (String policy : new String[] { "caller-runs", "block", "drop" }) {
+            queue = fullQueue(policy);
+            
+            queue.publish(new LoginEvent.Failed("alice", "bad password"));
+            
+            assertThat(queue.getStats()).containsEntry("dropped", 0L).containsEntry("appliedByCaller", 1L);
+        }
+        verify(failedLogins, times(3)).recordFailure("alice", "bad password");
+    }
+    
+    @Test
+    void dropPolicyDropsOnlySuccessfulLogins() {
+        queue = fullQueue("drop");
+        
+        queue.publish(succeeded());
+        
+        assertThat(queue.getStats()).containsEntry("dropped", 1L).containsEntry("appliedByCaller", 0L);
+        verify(userRepository, never()).update(any(), any());
+    }
+    
+    @Test
+    void blockPolicyDropsSuccessfulLoginsAfterTheTimeout() {
+        queue = fullQueue("block");
+        
+        queue.publish(succeeded());
+        
+        assertThat(queue.getStats()).containsEntry("dropped", 1L);
+        verify(userRepository, never()).update(any(), any());
+    }
+    
+    @Test
+    void callerRunsPolicyAppliesSuccessfulLoginsOnThePublisher() {
+        queue = fullQueue("caller-runs");
+        
+        queue.publish(succeeded());
+        
+        assertThat(queue.getStats()).containsEntry("dropped", 0L).containsEntry("appliedByCaller", 1L);
+        verify(userRepository).update(eq("user-1"), any());
+        verify(failedLogins).reset("alice");
+    }
+    
+    @Test
+    void consumerAppliesEveryQueuedEventByShutdown() {
+        queue = newQueue(true, "drop", 1024);
+        queue.init();
+        
+        for (int i = 0; i < 500; i++) {
+            queue.publish(new LoginEvent.Failed("alice", "bad password"));
+            queue.publish(succeeded());
+        }
+        queue.shutdown();
+        
+        assertThat(queue.getStats()).containsEntry("applied", 1000L).containsEntry("dropped", 0L);
+        verify(failedLogins, times(500)).recordFailure("alice", "bad password");
+        verify(failedLogins, times(500)).reset("alice");
+    }
+    
+    // Private helper methods
+    
+    private LoginEventQueue newQueue(boolean enabled, String overflow, int capacity) {
+        LoginEventQueue loginEvents = new LoginEventQueue(userRepository, failedLogins);
+        ReflectionTestUtils.setField(loginEvents, "enabled", enabled);
+        ReflectionTestUtils.setField(loginEvents, "capacity", capacity);
+        ReflectionTestUtils.setField(loginEvents, "maxBatch", 64);
+        ReflectionTestUtils.setField(loginEvents, "overflow", overflow);
+        ReflectionTestUtils.setField(loginEvents, "blockTimeoutMs", 1L);
+        ReflectionTestUtils.setField(loginEvents, "shutdownTimeoutSeconds", 10L);
+        return loginEvents;
+    }
+    
+    /**
+     * Queue whose ring is full and has no consumer, so every publish overflows
+     */
+    private LoginEventQueue fullQueue(String overflow) {
+        LoginEventQueue loginEvents = newQueue(false, overflow, 2);
+        loginEvents.init();
+        
+        RingBuffer<LoginEvent> ring = new RingBuffer<>(2);
+        while (ring.offer(new LoginEvent.Failed("queued", "filler"))) {
+            // Fill every slot
+        }
+        ReflectionTestUtils.setField(loginEvents, "ring", ring);
+        return loginEvents;
+    }
+    
+    private static LoginEvent.Succeeded succeeded() {
+        return new LoginEvent.Succeeded("user-1", "alice", "127.0.0.1", "PASSWORD", LocalDateTime.now(), null, null);
+    }
+}
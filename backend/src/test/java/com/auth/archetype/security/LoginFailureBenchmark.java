@@ -0,0 +1,118 @@
+package com.auth.archetype.security;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.BenchmarkApplication;
+import com.auth.archetype.dto.LoginRequest;
+import com.auth.archetype.exception.AuthException;
+import com.auth.archetype.model.User;
+import com.auth.archetype.repository.UserRepository;
+import com.auth.archetype.service.AuthService;
+
+/**
+ * Password logins per second when 95% of them fail, as under a credential-stuffing attack.
+ * Successes come from a set of accounts that never see a failure. Failures alternate between
+ * unknown usernames and wrong passwords for a second set of accounts, which get locked along
+ * the way as they would in an attack.
+ * 
+ * With {@code hashing=calibrated} the password hash dominates every login. {@code cheap}
+ * swaps in a minimum-cost bcrypt so the rest of the failure path is what gets measured.
+ * 
+ * Run with {@code mvn -Pbenchmark test -Djmh.args="LoginFailureBenchmark -t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoginFailureBenchmark {
+    
+    private static final String PASSWORD = "correct-password";
+    private static final int FAILURE_PERCENT = 95;
+    
+    @Param({"cheap", "calibrated"})
+    public String hashing;
+    
+    @Param({"1000"})
+    public int accounts;
+    
+    private BenchmarkApplication application;
+    private AuthService authService;
+    private LoginRequest[] successes;
+    private LoginRequest[] wrongPasswords;
+    
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        application = BenchmarkApplication.start(Map.of());
+        authService = application.bean(AuthService.class);
+        
+        PasswordEncoder passwordEncoder = application.bean(PasswordEncoder.class);
+        if ("cheap".equals(hashing)) {
+            // Keep the hashing pool and swap the calibrated bcrypt behind it
+            ReflectionTestUtils.setField(passwordEncoder, "delegate",
+                    new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", new BCryptPasswordEncoder(4))));
+        }
+        // One hash shared by every account keeps setup fast at the calibrated cost
+        String hash = passwordEncoder.encode(PASSWORD);
+        
+        UserRepository users = application.bean(UserRepository.class);
+        successes = new LoginRequest[accounts];
+        wrongPasswords = new LoginRequest[accounts];
+        for (int i = 0; i < accounts; i++) {
+            users.save(User.createNew("good" + i, hash, "Good", "User", "good" + i + "@example.com",
+                    List.of("USER"), false));
+            users.save(User.createNew("target" + i, hash, "Target", "User", "target" + i + "@example.com",
+                    List.of("USER"), false));
+            successes[i] = new LoginRequest("good" + i, PASSWORD);
+            wrongPasswords[i] = new LoginRequest("target" + i, "guess");
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        application.close();
+    }
+    
+    @Benchmark
+    public Object login() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        LoginRequest request;
+        if (roll >= FAILURE_PERCENT) {
+            request = successes[random.nextInt(accounts)];
+        } else if ((roll & 1) == 0) {
+            request = wrongPasswords[random.nextInt(accounts)];
+        } else {
+            request = new LoginRequest("unknown" + random.nextInt(1_000_000), PASSWORD);
+        }
+        
+        try {
+            return authService.login(request);
+        } catch (AuthException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.auth.archetype.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.security.RefreshTokenStore.Rotation;
+import com.auth.archetype.util.FileStorageUtil;
+
+class RefreshTokenStoreTest {
+    
+    private static final long WEEK_MILLIS = 604_800_000L;
+    
+    @TempDir
+    Path directory;
+    
+    private RefreshTokenStore store;
+    
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+    
+    @Test
+    void eachRefreshMovesTheFamilyToTheNextGeneration() {
+        store = openStore(WEEK_MILLIS);
+        long family = store.startFamily();
+        
+        assertThat(store.isActive(family)).isTrue();
+        assertThat(store.rotate(family, 0)).isEqualTo(Rotation.ROTATED);
+        assertThat(store.rotate(family, 1)).isEqualTo(Rotation.ROTATED);
+        assertThat(store.isActive(family)).isTrue();
+    }
+    
+    @Test
+    void replayingAnOlderGenerationRevokesTheWholeFamily() {
+        store = openStore(WEEK_MILLIS);
+        long family = store.startFamily();
+        long other = store.startFamily();
+        store.rotate(family, 0);
+        
+        assertThat(store.rotate(family, 0)).isEqualTo(Rotation.REUSED);
+        
+        assertThat(store.isActive(family)).isFalse();
+        assertThat(store.rotate(family, 1)).isEqualTo(Rotation.UNKNOWN);
+        assertThat(store.isActive(other)).isTrue();
+    }
+    
+    @Test
+    void revokedAndUnknownFamiliesAreInactive() {
+        store = openStore(WEEK_MILLIS);
+        long family = store.startFamily();
+        
+        store.revokeFamily(family);
+        
+        assertThat(store.isActive(family)).isFalse();
+        assertThat(store.rotate(family, 0)).isEqualTo(Rotation.UNKNOWN);
+        assertThat(store.isActive(family + 1)).isFalse();
+    }
+    
+    @Test
+    void familiesPastTheirLifetimeAreInactiveAndDroppedOnLoad() {
+        store = openStore(0);
+        long family = store.startFamily();
+        
+        assertThat(store.isActive(family)).isFalse();
+        assertThat(store.rotate(family, 0)).isEqualTo(Rotation.UNKNOWN);
+        store.shutdown();
+        
+        store = openStore(WEEK_MILLIS);
+        
+        assertThat(store.size()).isZero();
+        assertThat(store.isActive(family)).isFalse();
+    }
+    
+    @Test
+    void journalReplayRestoresGenerationsAndRevocations() {
+        store = openStore(WEEK_MILLIS);
+        long rotated = store.startFamily();
+        long revoked = store.startFamily();
+        store.rotate(rotated, 0);
+        store.revokeFamily(revoked);
+        store.shutdown();
+        
+        store = openStore(WEEK_MILLIS);
+        
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.isActive(revoked)).isFalse();
+        assertThat(store.rotate(rotated, 0)).isEqualTo(Rotation.REUSED);
+    }
+    
+    @Test
+    void compactionFoldsTheJournalIntoTheSnapshot() {
+        store = openStore(WEEK_MILLIS);
+        long kept = store.startFamily();
+        long revoked = store.startFamily();
+        store.rotate(kept, 0);
+        store.revokeFamily(revoked);
+        
+        ReflectionTestUtils.invokeMethod(store, "compactJournal");
+        long afterCompaction = store.startFamily();
+        store.shutdown();
+        
+        assertThat(directory.resolve("refresh-families.dat")).exists();
+        assertThat(Files.exists(directory.resolve("refresh-families.dat.journal.compacting"))).isFalse();
+        
+        store = openStore(WEEK_MILLIS);
+        
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.rotate(kept, 1)).isEqualTo(Rotation.ROTATED);
+        assertThat(store.isActive(afterCompaction)).isTrue();
+        assertThat(store.isActive(revoked)).isFalse();
+    }
+    
+    // Private helper methods
+    
+    private RefreshTokenStore openStore(long refreshExpiration) {
+        FileStorageUtil fileStorageUtil = new FileStorageUtil("none");
+        ReflectionTestUtils.setField(fileStorageUtil, "storagePath", directory.toString());
+        
+        RefreshTokenStore families = new RefreshTokenStore(fileStorageUtil);
+        ReflectionTestUtils.setField(families, "refreshExpiration", refreshExpiration);
+        ReflectionTestUtils.setField(families, "expectedFamilies", 1000);
+        ReflectionTestUtils.setField(families, "compactThresholdBytes", 0L);
+        families.init();
+        return families;
+    }
+}
@@ -0,0 +1,114 @@
+package com.auth.archetype.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.util.FileStorageUtil;
+
+class TokenRevocationStoreTest {
+    
+    @TempDir
+    Path directory;
+    
+    private TokenRevocationStore store;
+    
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+    
+    @Test
+    void tokenMintedRightAfterRevokeAllStaysValid() {
+        store = openStore();
+        VerifiedToken before = token("user-1", store.revocationEpoch("user-1"), Instant.now());
+        
+        store.revokeAllForUser("user-1");
+        VerifiedToken after = token("user-1", store.revocationEpoch("user-1"), Instant.now());
+        
+        assertThat(store.isRevoked(before)).isTrue();
+        assertThat(store.isRevoked(after)).isFalse();
+        assertThat(store.isRevoked(token("user-2", 0L, Instant.now()))).isFalse();
+    }
+    
+    @Test
+    void everyRevokeAllMovesTheEpoch() {
+        store = openStore();
+        
+        store.revokeAllForUser("user-1");
+        long first = store.revocationEpoch("user-1");
+        VerifiedToken minted = token("user-1", first, Instant.now());
+        store.revokeAllForUser("user-1");
+        
+        assertThat(store.revocationEpoch("user-1")).isGreaterThan(first);
+        assertThat(store.isRevoked(minted)).isTrue();
+    }
+    
+    @Test
+    void tokensWithoutTheEpochClaimFallBackToTheirIssueTime() {
+        store = openStore();
+        Instant issuedBefore = Instant.now().minusSeconds(5);
+        
+        store.revokeAllForUser("user-1");
+        
+        assertThat(store.isRevoked(token("user-1", null, issuedBefore))).isTrue();
+        assertThat(store.isRevoked(token("user-1", null, Instant.now().plusSeconds(5)))).isFalse();
+    }
+    
+    @Test
+    void legacyWatermarksCoverTheirWholeSecond() throws Exception {
+        long watermark = Instant.now().getEpochSecond();
+        Files.writeString(directory.resolve("revocations.json"),
+                "{\"tokens\":{},\"watermarks\":{\"user-1\":" + watermark + "}}");
+        
+        store = openStore();
+        
+        assertThat(store.isRevoked(token("user-1", null, Instant.ofEpochSecond(watermark, 999_000_000)))).isTrue();
+        assertThat(store.isRevoked(token("user-1", null, Instant.ofEpochSecond(watermark + 1)))).isFalse();
+        assertThat(store.isRevoked(token("user-1", store.revocationEpoch("user-1"), Instant.now()))).isFalse();
+    }
+    
+    @Test
+    void epochsSurviveARestart() {
+        store = openStore();
+        store.revokeAllForUser("user-1");
+        long epoch = store.revocationEpoch("user-1");
+        store.shutdown();
+        
+        store = openStore();
+        
+        assertThat(store.revocationEpoch("user-1")).isEqualTo(epoch);
+        assertThat(store.isRevoked(token("user-1", epoch - 1, Instant.now()))).isTrue();
+    }
+    
+    // Private helper methods
+    
+    private TokenRevocationStore openStore() {
+        FileStorageUtil fileStorageUtil = new FileStorageUtil("none");
+        ReflectionTestUtils.setField(fileStorageUtil, "storagePath", directory.toString());
+        
+        TokenRevocationStore revocations = new TokenRevocationStore(
+                fileStorageUtil, new VerifiedTokenCache(), mock(RefreshTokenStore.class));
+        ReflectionTestUtils.setField(revocations, "refreshExpiration", 604_800_000L);
+        ReflectionTestUtils.setField(revocations, "expectedEntries", 1000);
+        ReflectionTestUtils.setField(revocations, "purgeIntervalSeconds", 3600L);
+        revocations.init();
+        return revocations;
+    }
+    
+    private static VerifiedToken token(String userId, Long revocationEpoch, Instant issuedAt) {
+        return new VerifiedToken(userId, null, userId, List.of("USER"), issuedAt,
+                issuedAt.plusSeconds(900), false, null, null, null, revocationEpoch);
+    }
+}
@@ -0,0 +1,227 @@
+package com.auth.archetype.security;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import com.auth.archetype.BenchmarkApplication;
+import com.auth.archetype.model.User;
+import com.auth.archetype.repository.UserRepository;
+
+/**
+ * Token checks per second over the verification socket, one at a time and pipelined, against
+ * the HTTP introspection endpoint over a kept-alive connection. Every operation checks one
+ * valid access token; each benchmark thread has its own connections.
+ * 
+ * HTTP requests are written in one piece with Nagle's algorithm off, as the socket frames
+ * are, so the comparison is not skewed by a client that sends headers and body separately
+ * and then waits out the server's delayed ACK.
+ * 
+ * Run with {@code mvn -Pbenchmark test -Djmh.args="VerificationSocketBenchmark -t 4"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The HTTP path takes a while to reach steady state under the JIT
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerificationSocketBenchmark {
+    
+    private static final int PIPELINE_DEPTH = 64;
+    
+    @State(Scope.Benchmark)
+    public static class Service {
+        
+        private Path socketDirectory;
+        private Path socketPath;
+        private BenchmarkApplication application;
+        private String accessToken;
+        private int port;
+        
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            socketDirectory = Files.createTempDirectory("verify-socket");
+            socketPath = socketDirectory.resolve("auth-verify.sock");
+            application = BenchmarkApplication.start(Map.of(
+                    "jwt.socket.enabled", true,
+                    "jwt.socket.path", socketPath.toString()));
+            
+            User admin = application.bean(UserRepository.class)
+                    .findByUsername(BenchmarkApplication.ADMIN_USERNAME).orElseThrow();
+            accessToken = application.bean(JwtTokenProvider.class).generateTokenPair(admin).accessToken();
+            port = application.port();
+        }
+        
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            application.close();
+            FileSystemUtils.deleteRecursively(socketDirectory);
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Connection {
+        
+        private SocketChannel socket;
+        private ByteBuffer single;
+        private ByteBuffer pipelined;
+        private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        
+        private InetSocketAddress httpAddress;
+        private SocketChannel http;
+        private ByteBuffer introspect;
+        private final ByteBuffer httpIn = ByteBuffer.allocate(64 * 1024);
+        
+        @Setup(Level.Trial)
+        public void open(Service service) throws IOException {
+            socket = SocketChannel.open(StandardProtocolFamily.UNIX);
+            socket.connect(UnixDomainSocketAddress.of(service.socketPath));
+            
+            byte[] token = service.accessToken.getBytes(StandardCharsets.US_ASCII);
+            single = frames(token, 1);
+            pipelined = frames(token, PIPELINE_DEPTH);
+            
+            httpAddress = new InetSocketAddress("localhost", service.port);
+            connectHttp();
+            String body = "{\"tokens\":[\"" + service.accessToken + "\"]}";
+            introspect = ByteBuffer.wrap(("POST /auth/introspect HTTP/1.1\r\n"
+                    + "Host: localhost:" + service.port + "\r\n"
+                    + "Authorization: Bearer " + service.accessToken + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + body.length() + "\r\n"
+                    + "\r\n"
+                    + body).getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+            http.close();
+        }
+        
+        /**
+         * Send the prepared frames and wait for as many responses
+         * 
+         * @return status of the last response
+         */
+        byte exchange(ByteBuffer frames, int count) throws IOException {
+            frames.rewind();
+            while (frames.hasRemaining()) {
+                socket.write(frames);
+            }
+            
+            byte status = -1;
+            int received = 0;
+            while (received < count) {
+                if (socket.read(in) < 0) {
+                    throw new IOException("Verification socket closed");
+                }
+                in.flip();
+                while (in.remaining() >= Integer.BYTES && in.remaining() >= Integer.BYTES + in.getInt(in.position())) {
+                    int length = in.getInt();
+                    status = in.get(in.position() + Integer.BYTES);
+                    in.position(in.position() + length);
+                    received++;
+                }
+                in.compact();
+            }
+            return status;
+        }
+        
+        /**
+         * Send the prepared introspection request and read its whole response
+         * 
+         * @return the response status line
+         */
+        String introspect() throws IOException {
+            introspect.rewind();
+            while (introspect.hasRemaining()) {
+                http.write(introspect);
+            }
+            
+            httpIn.clear();
+            while (true) {
+                if (http.read(httpIn) < 0) {
+                    throw new IOException("HTTP connection closed");
+                }
+                String response = new String(httpIn.array(), 0, httpIn.position(), StandardCharsets.ISO_8859_1);
+                int headerEnd = response.indexOf("\r\n\r\n");
+                if (headerEnd < 0) {
+                    continue;
+                }
+                
+                String headers = response.substring(0, headerEnd).toLowerCase();
+                int contentLength = headers.indexOf("content-length: ");
+                boolean complete = contentLength >= 0
+                        ? response.length() - headerEnd - 4 >= Integer.parseInt(
+                                headers.substring(contentLength + 16).split("\r\n", 2)[0].trim())
+                        : response.endsWith("\r\n0\r\n\r\n");
+                if (complete) {
+                    String statusLine = response.substring(0, response.indexOf("\r\n"));
+                    if (!statusLine.contains(" 200")) {
+                        throw new IllegalStateException("Introspection failed: " + statusLine);
+                    }
+                    // The server ends a kept-alive connection after a number of requests
+                    if (headers.contains("connection: close")) {
+                        http.close();
+                        connectHttp();
+                    }
+                    return statusLine;
+                }
+            }
+        }
+        
+        private void connectHttp() throws IOException {
+            http = SocketChannel.open(httpAddress);
+            http.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        
+        private static ByteBuffer frames(byte[] token, int count) {
+            ByteBuffer frames = ByteBuffer.allocate(count * (2 * Integer.BYTES + token.length));
+            for (int i = 0; i < count; i++) {
+                frames.putInt(Integer.BYTES + token.length).putInt(i).put(token);
+            }
+            return frames.flip();
+        }
+    }
+    
+    @Benchmark
+    public byte socket(Connection connection) throws IOException {
+        return connection.exchange(connection.single, 1);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public byte socketPipelined(Connection connection) throws IOException {
+        return connection.exchange(connection.pipelined, PIPELINE_DEPTH);
+    }
+    
+    @Benchmark
+    public String http(Connection connection) throws IOException {
+        return connection.introspect();
+    }
+}
@@ -0,0 +1,179 @@
+package com.auth.archetype.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.auth.archetype.service.TokenIntrospectionService;
+
+class VerificationSocketServerTest {
+    
+    private static final Instant EXPIRES_AT = Instant.ofEpochSecond(1_900_000_000L);
+    
+    @TempDir
+    Path directory;
+    
+    private final TokenIntrospectionService introspectionService = mock(TokenIntrospectionService.class);
+    private VerificationSocketServer server;
+    private SocketChannel client;
+    
+    @BeforeEach
+    void start() throws IOException {
+        server = new VerificationSocketServer(introspectionService);
+        ReflectionTestUtils.setField(server, "enabled", true);
+        ReflectionTestUtils.setField(server, "socketPath", directory.resolve("verify.sock").toString());
+        server.start();
+        
+        client = SocketChannel.open(StandardProtocolFamily.UNIX);
+        client.connect(UnixDomainSocketAddress.of(directory.resolve("verify.sock")));
+    }
+    
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.stop();
+    }
+    
+    @Test
+    void activeTokenCarriesItsClaims() throws IOException {
+        when(introspectionService.verifyActive("good")).thenReturn(token("josé 😀", List.of("USER", "ADMIN")));
+        
+        ByteBuffer response = exchange(7, "good");
+        
+        assertThat(response.getInt()).isEqualTo(7);
+        assertThat(response.get()).isEqualTo(VerificationSocketServer.STATUS_ACTIVE);
+        assertThat(response.get()).isZero();
+        assertThat(response.getLong()).isEqualTo(EXPIRES_AT.getEpochSecond());
+        assertThat(getString(response)).isEqualTo("josé 😀");
+        assertThat(response.get()).isEqualTo((byte) 2);
+        assertThat(getString(response)).isEqualTo("USER");
+        assertThat(getString(response)).isEqualTo("ADMIN");
+        assertThat(response.hasRemaining()).isFalse();
+    }
+    
+    @Test
+    void unknownTokenIsInactive() throws IOException {
+        ByteBuffer response = exchange(1, "bad");
+        
+        assertThat(response.getInt()).isEqualTo(1);
+        assertThat(response.get()).isEqualTo(VerificationSocketServer.STATUS_INACTIVE);
+        assertThat(response.hasRemaining()).isFalse();
+    }
+    
+    @Test
+    void subjectTooLongForALengthPrefixIsAnErrorAndTheConnectionSurvives() throws IOException {
+        when(introspectionService.verifyActive("long")).thenReturn(token("x".repeat(70_000), List.of("USER")));
+        when(introspectionService.verifyActive("good")).thenReturn(token("alice", List.of("USER")));
+        
+        ByteBuffer response = exchange(1, "long");
+        assertThat(response.getInt()).isEqualTo(1);
+        assertThat(response.get()).isEqualTo(VerificationSocketServer.STATUS_ERROR);
+        assertThat(response.hasRemaining()).isFalse();
+        
+        response = exchange(2, "good");
+        assertThat(response.getInt()).isEqualTo(2);
+        assertThat(response.get()).isEqualTo(VerificationSocketServer.STATUS_ACTIVE);
+    }
+    
+    @Test
+    void rolesOverflowingTheResponseAreAnError() throws IOException {
+        // 255 roles of 100 bytes is well past the 16 KB a response may take
+        List<String> roles = new ArrayList<>(Collections.nCopies(300, "R".repeat(100)));
+        when(introspectionService.verifyActive("many")).thenReturn(token("alice", roles));
+        
+        ByteBuffer response = exchange(3, "many");
+        
+        assertThat(response.getInt()).isEqualTo(3);
+        assertThat(response.get()).isEqualTo(VerificationSocketServer.STATUS_ERROR);
+        assertThat(response.hasRemaining()).isFalse();
+    }
+    
+    @Test
+    void pipelinedOversizedResponsesDoNotCorruptTheirNeighbours() throws IOException {
+        when(introspectionService.verifyActive("many"))
+                .thenReturn(token("alice", Collections.nCopies(255, "€".repeat(60))));
+        when(introspectionService.verifyActive("good")).thenReturn(token("alice", List.of("USER")));
+        
+        ByteBuffer requests = ByteBuffer.allocate(64 * 1024);
+        for (int i = 0; i < 10; i++) {
+            putRequest(requests, i, i % 2 == 0 ? "many" : "good");
+        }
+        write(requests);
+        
+        for (int i = 0; i < 10; i++) {
+            ByteBuffer response = readResponse();
+            assertThat(response.getInt()).isEqualTo(i);
+            assertThat(response.get()).isEqualTo(i % 2 == 0
+                    ? VerificationSocketServer.STATUS_ERROR
+                    : VerificationSocketServer.STATUS_ACTIVE);
+        }
+    }
+    
+    // Private helper methods
+    
+    private static VerifiedToken token(String subject, List<String> roles) {
+        return new VerifiedToken(subject, "jti", "user-1", roles, EXPIRES_AT.minusSeconds(900), EXPIRES_AT,
+                false, null, null, null, null);
+    }
+    
+    private ByteBuffer exchange(int requestId, String token) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(1024);
+        putRequest(request, requestId, token);
+        write(request);
+        return readResponse();
+    }
+    
+    private static void putRequest(ByteBuffer request, int requestId, String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+        request.putInt(Integer.BYTES + bytes.length);
+        request.putInt(requestId);
+        request.put(bytes);
+    }
+    
+    private void write(ByteBuffer request) throws IOException {
+        request.flip();
+        while (request.hasRemaining()) {
+            client.write(request);
+        }
+    }
+    
+    // The frame after its length prefix
+    private ByteBuffer readResponse() throws IOException {
+        ByteBuffer length = readFully(Integer.BYTES);
+        return readFully(length.getInt());
+    }
+    
+    private ByteBuffer readFully(int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+        return buffer.flip();
+    }
+    
+    private static String getString(ByteBuffer response) {
+        byte[] bytes = new byte[Short.toUnsignedInt(response.getShort())];
+        response.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
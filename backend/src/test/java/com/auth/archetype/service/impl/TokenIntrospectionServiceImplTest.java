@@ -0,0 +1,66 @@
+package com.auth.archetype.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.auth.archetype.dto.IntrospectionResult;
+import com.auth.archetype.security.JwtTokenProvider;
+import com.auth.archetype.security.SecurityStampRegistry;
+import com.auth.archetype.security.TokenRevocationStore;
+import com.auth.archetype.security.VerifiedToken;
+import com.auth.archetype.security.VerifiedTokenCache;
+
+import io.jsonwebtoken.MalformedJwtException;
+
+class TokenIntrospectionServiceImplTest {
+    
+    private final JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+    private final TokenRevocationStore revocations = mock(TokenRevocationStore.class);
+    
+    private TokenIntrospectionServiceImpl service;
+    
+    @BeforeEach
+    void setUp() {
+        Instant now = Instant.now();
+        when(tokenProvider.verify(any())).thenAnswer(invocation -> switch ((String) invocation.getArgument(0)) {
+            case "malformed" -> throw new MalformedJwtException("bad token");
+            case "broken" -> throw new IllegalStateException("unexpected failure");
+            default -> new VerifiedToken("alice", "jti", "user-1", List.of("USER"), now,
+                    now.plusSeconds(900), false, null, null, null, null);
+        });
+        
+        service = new TokenIntrospectionServiceImpl(tokenProvider, new VerifiedTokenCache(), revocations,
+                mock(SecurityStampRegistry.class));
+        service.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+    
+    @Test
+    void aFailingTokenIsInactiveWithoutFailingItsBatch() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tokens.add(i % 3 == 0 ? "valid-" + i : i % 3 == 1 ? "malformed" : "broken");
+        }
+        
+        List<IntrospectionResult> results = service.introspect(tokens);
+        
+        assertThat(results).hasSize(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertThat(results.get(i).isActive()).as(tokens.get(i)).isEqualTo(i % 3 == 0);
+        }
+    }
+}
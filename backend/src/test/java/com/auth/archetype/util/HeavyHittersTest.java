@@ -0,0 +1,69 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HeavyHittersTest {
+    
+    @Test
+    void findsTheHeaviestKeysAmongDistinctNoise() {
+        HeavyHitters hitters = new HeavyHitters(new SlidingCountMinSketch(4, 4096, 3), 5);
+        List<String> stream = new ArrayList<>();
+        for (int heavy = 0; heavy < 5; heavy++) {
+            for (int i = 0; i < 1000 - heavy * 100; i++) {
+                stream.add("heavy-" + heavy);
+            }
+        }
+        for (int i = 0; i < 20_000; i++) {
+            stream.add("noise-" + i);
+        }
+        Collections.shuffle(stream, new Random(7));
+        
+        stream.forEach(hitters::add);
+        
+        Map<String, Long> top = hitters.top();
+        assertThat(top.keySet()).containsExactly("heavy-0", "heavy-1", "heavy-2", "heavy-3", "heavy-4");
+        for (int heavy = 0; heavy < 5; heavy++) {
+            assertThat(top.get("heavy-" + heavy)).isGreaterThanOrEqualTo(1000 - heavy * 100);
+        }
+    }
+    
+    @Test
+    void rotationRefreshesCountsAndDropsKeysNoLongerSeen() {
+        HeavyHitters hitters = new HeavyHitters(new SlidingCountMinSketch(4, 1024, 2), 2);
+        for (int i = 0; i < 10; i++) {
+            hitters.add("old");
+        }
+        hitters.rotate();
+        for (int i = 0; i < 3; i++) {
+            hitters.add("new");
+        }
+        assertThat(hitters.top()).containsExactly(Map.entry("old", 10L), Map.entry("new", 3L));
+        
+        hitters.rotate();
+        assertThat(hitters.top()).containsExactly(Map.entry("new", 3L));
+        
+        hitters.rotate();
+        assertThat(hitters.top()).isEmpty();
+    }
+    
+    @Test
+    void rotatedOutKeyMakesRoomForANewOne() {
+        HeavyHitters hitters = new HeavyHitters(new SlidingCountMinSketch(4, 1024, 1), 1);
+        for (int i = 0; i < 100; i++) {
+            hitters.add("attacker-1");
+        }
+        hitters.rotate();
+        
+        hitters.add("attacker-2");
+        
+        assertThat(hitters.top()).containsExactly(Map.entry("attacker-2", 1L));
+    }
+}
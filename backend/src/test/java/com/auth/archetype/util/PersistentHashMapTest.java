@@ -0,0 +1,143 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PersistentHashMapTest {
+    
+    /**
+     * Key with a chosen hash code, to force collisions and shared trie prefixes
+     */
+    private record Key(String name, int hash) {
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    @Test
+    void updatesLeaveEarlierVersionsUnchanged() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> one = empty.put("a", 1);
+        PersistentHashMap<String, Integer> two = one.put("b", 2);
+        PersistentHashMap<String, Integer> replaced = two.put("a", 10);
+        PersistentHashMap<String, Integer> removed = replaced.remove("b");
+        
+        assertThat(empty.size()).isZero();
+        assertThat(one.get("a")).isEqualTo(1);
+        assertThat(one.get("b")).isNull();
+        assertThat(two.get("a")).isEqualTo(1);
+        assertThat(replaced.get("a")).isEqualTo(10);
+        assertThat(replaced.size()).isEqualTo(2);
+        assertThat(removed.get("b")).isNull();
+        assertThat(removed.size()).isEqualTo(1);
+        assertThat(two.get("b")).isEqualTo(2);
+    }
+    
+    @Test
+    void noOpUpdatesReturnTheSameMap() {
+        Integer value = 1;
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", value);
+        
+        assertThat(map.put("a", value)).isSameAs(map);
+        assertThat(map.remove("missing")).isSameAs(map);
+        assertThat(map.remove(null)).isSameAs(map);
+    }
+    
+    @Test
+    void updateSharesEveryUntouchedBranch() {
+        PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+        // One key per top-level slot, with a second level below each
+        for (int slot = 0; slot < 32; slot++) {
+            map = map.put(new Key("k" + slot, slot), "v").put(new Key("k" + slot + "'", slot | (1 << 5)), "v");
+        }
+        
+        PersistentHashMap<Key, String> updated = map.put(new Key("k7", 7), "changed");
+        
+        Object[] before = slots(map);
+        Object[] after = slots(updated);
+        assertThat(after).hasSameSizeAs(before);
+        for (int i = 0; i < before.length; i++) {
+            if (i == 7) {
+                assertThat(after[i]).isNotSameAs(before[i]);
+            } else {
+                assertThat(after[i]).isSameAs(before[i]);
+            }
+        }
+        assertThat(map.get(new Key("k7", 7))).isEqualTo("v");
+        assertThat(updated.get(new Key("k7", 7))).isEqualTo("changed");
+    }
+    
+    @Test
+    void collidingKeysAreKeptApart() {
+        Key a = new Key("a", 42);
+        Key b = new Key("b", 42);
+        Key c = new Key("c", 42);
+        // Shares the first two trie levels with the colliding keys
+        Key near = new Key("near", 42 | (1 << 10));
+        
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.<Key, Integer>empty()
+                .put(a, 1).put(b, 2).put(c, 3).put(near, 4);
+        
+        assertThat(map.size()).isEqualTo(4);
+        assertThat(map.get(a)).isEqualTo(1);
+        assertThat(map.get(b)).isEqualTo(2);
+        assertThat(map.get(c)).isEqualTo(3);
+        assertThat(map.get(near)).isEqualTo(4);
+        assertThat(map.get(new Key("d", 42))).isNull();
+        
+        PersistentHashMap<Key, Integer> withoutB = map.remove(b);
+        assertThat(withoutB.size()).isEqualTo(3);
+        assertThat(withoutB.get(b)).isNull();
+        assertThat(withoutB.get(a)).isEqualTo(1);
+        assertThat(withoutB.get(c)).isEqualTo(3);
+        
+        PersistentHashMap<Key, Integer> onlyNear = withoutB.remove(a).remove(c);
+        assertThat(onlyNear.size()).isEqualTo(1);
+        assertThat(onlyNear.get(near)).isEqualTo(4);
+        assertThat(onlyNear.remove(near).isEmpty()).isTrue();
+        assertThat(map.get(b)).isEqualTo(2);
+    }
+    
+    @Test
+    void matchesAHashMapUnderRandomUpdates() {
+        Random random = new Random(7);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        
+        for (int i = 0; i < 20_000; i++) {
+            // Few distinct hashes, so collisions and deep shared prefixes are common
+            int id = random.nextInt(2_000);
+            Key key = new Key("k" + id, id % 300 * 0x9E3779B1);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        
+        assertThat(map.size()).isEqualTo(expected.size());
+        Map<Key, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+            assertThat(map.get(entry.getKey())).isEqualTo(entry.getValue());
+        }
+    }
+    
+    // Private helper methods
+    
+    private static Object[] slots(PersistentHashMap<?, ?> map) {
+        Object root = ReflectionTestUtils.getField(map, "root");
+        return (Object[]) ReflectionTestUtils.getField(root, "slots");
+    }
+}
@@ -0,0 +1,127 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+    
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwoOfAtLeastTwo() {
+        assertThat(new RingBuffer<>(0).capacity()).isEqualTo(2);
+        assertThat(new RingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new RingBuffer<>(5).capacity()).isEqualTo(8);
+        assertThat(new RingBuffer<>(1024).capacity()).isEqualTo(1024);
+    }
+    
+    @Test
+    void fullRingRejectsOffersUntilDrained() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+        
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drain(drained::add, 1)).isEqualTo(1);
+        assertThat(ring.offer(4)).isTrue();
+        assertThat(ring.offer(5)).isFalse();
+        
+        ring.drain(drained::add, Integer.MAX_VALUE);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4);
+        assertThat(ring.isEmpty()).isTrue();
+    }
+    
+    @Test
+    void smallestRingNeverOverwritesAnUndrainedSlot() {
+        RingBuffer<String> ring = new RingBuffer<>(1);
+        assertThat(ring.offer("a")).isTrue();
+        assertThat(ring.offer("b")).isTrue();
+        assertThat(ring.offer("c")).isFalse();
+        
+        List<String> drained = new ArrayList<>();
+        ring.drain(drained::add, Integer.MAX_VALUE);
+        assertThat(drained).containsExactly("a", "b");
+    }
+    
+    @Test
+    void drainStopsAtMaxAndResumesInOrderAcrossLaps() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        
+        for (int i = 0; i < 20; i++) {
+            assertThat(ring.offer(i)).isTrue();
+            if (i % 3 == 2) {
+                assertThat(ring.drain(drained::add, 2)).isEqualTo(2);
+                assertThat(ring.drain(drained::add, 2)).isEqualTo(1);
+            }
+        }
+        assertThat(ring.drain(drained::add, 0)).isZero();
+        ring.drain(drained::add, Integer.MAX_VALUE);
+        
+        for (int i = 0; i < 20; i++) {
+            assertThat(drained.get(i)).isEqualTo(i);
+        }
+    }
+    
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        RingBuffer<Long> ring = new RingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long producer = p;
+                results.add(executor.submit(() -> {
+                    for (long i = 0; i < perProducer; i++) {
+                        // A small ring under contention makes producers hit the full case;
+                        // yield rather than spin so the consumer also runs on a single core
+                        while (!ring.offer(producer << 32 | i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+            
+            long[] next = new long[producers];
+            long[] outOfOrder = new long[1];
+            long received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received < (long) producers * perProducer && System.nanoTime() < deadline) {
+                int drained = ring.drain(element -> {
+                    int producer = (int) (element >>> 32);
+                    long sequence = element & 0xFFFFFFFFL;
+                    if (sequence != next[producer]) {
+                        outOfOrder[0]++;
+                    }
+                    next[producer] = sequence + 1;
+                }, 256);
+                received += drained;
+                if (drained == 0) {
+                    Thread.yield();
+                }
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+            
+            assertThat(received).isEqualTo((long) producers * perProducer);
+            assertThat(outOfOrder[0]).isZero();
+            assertThat(next).containsOnly(perProducer);
+            assertThat(ring.isEmpty()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
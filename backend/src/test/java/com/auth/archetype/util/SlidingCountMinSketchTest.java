@@ -0,0 +1,88 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingCountMinSketchTest {
+    
+    @Test
+    void estimatesNeverUndercount() {
+        // Narrow enough that most counters are shared by many keys
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 64, 3);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 50_000; i++) {
+            // Skewed: a few keys are frequent, most are rare
+            String key = "10.0." + (int) Math.pow(random.nextInt(1 << 16), 0.6);
+            long count = exact.merge(key, 1L, Long::sum);
+            assertThat(sketch.add(key)).isGreaterThanOrEqualTo(count);
+        }
+        
+        long totalError = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertThat(estimate).isGreaterThanOrEqualTo(entry.getValue());
+            totalError += estimate - entry.getValue();
+        }
+        assertThat(totalError / exact.size()).isLessThanOrEqualTo(sketch.expectedOvercount());
+    }
+    
+    @Test
+    void estimatesAreExactWithoutCollisions() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1 << 16, 3);
+        for (int key = 0; key < 10; key++) {
+            for (int i = 0; i <= key; i++) {
+                sketch.add("key-" + key);
+            }
+        }
+        
+        for (int key = 0; key < 10; key++) {
+            assertThat(sketch.estimate("key-" + key)).isEqualTo(key + 1);
+        }
+        assertThat(sketch.estimate("never-seen")).isZero();
+    }
+    
+    @Test
+    void windowSlidesOneSubWindowPerRotation() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 3);
+        
+        for (int i = 0; i < 5; i++) {
+            sketch.add("10.0.0.1");
+        }
+        sketch.rotate();
+        sketch.add("10.0.0.1");
+        sketch.add("10.0.0.1");
+        assertThat(sketch.estimate("10.0.0.1")).isEqualTo(7);
+        
+        sketch.rotate();
+        assertThat(sketch.estimate("10.0.0.1")).isEqualTo(7);
+        
+        // The first sub-window is now the oldest and falls out
+        sketch.rotate();
+        assertThat(sketch.estimate("10.0.0.1")).isEqualTo(2);
+        
+        sketch.rotate();
+        assertThat(sketch.estimate("10.0.0.1")).isZero();
+    }
+    
+    @Test
+    void expectedOvercountIsTheWindowTotalOverTheWidth() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(2, 100, 2);
+        for (int i = 0; i < 1280; i++) {
+            sketch.add("key-" + i);
+        }
+        
+        // Width is rounded up to 128
+        assertThat(sketch.expectedOvercount()).isEqualTo(10);
+        
+        sketch.rotate();
+        sketch.rotate();
+        assertThat(sketch.expectedOvercount()).isZero();
+    }
+}
@@ -0,0 +1,68 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class StripedLocksTest {
+    
+    @Test
+    void stripesAreRoundedUpToAPowerOfTwo() {
+        assertThat(stripes(new StripedLocks(5))).isEqualTo(8);
+        assertThat(stripes(new StripedLocks(64))).isEqualTo(64);
+        assertThat(stripes(new StripedLocks(65))).isEqualTo(128);
+    }
+    
+    @Test
+    void keysMapToAStableSpreadOfLocks() {
+        StripedLocks locks = new StripedLocks(16);
+        Set<ReentrantLock> used = new HashSet<>();
+        
+        for (int i = 0; i < 1000; i++) {
+            String key = "user-" + i;
+            assertThat(locks.get(key)).isSameAs(locks.get(new String(key)));
+            used.add(locks.get(key));
+        }
+        
+        assertThat(used).hasSize(16);
+    }
+    
+    @Test
+    void holdersOfOneKeyAreMutuallyExclusive() throws Exception {
+        StripedLocks locks = new StripedLocks(4);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ReentrantLock lock = locks.get("shared");
+                    lock.lock();
+                    try {
+                        counter[0]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        
+        assertThat(counter[0]).isEqualTo(80_000);
+    }
+    
+    // Private helper methods
+    
+    private static int stripes(StripedLocks locks) {
+        return ((ReentrantLock[]) ReflectionTestUtils.getField(locks, "locks")).length;
+    }
+}
@@ -0,0 +1,135 @@
+package com.auth.archetype.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTableTest {
+    
+    // One permit a second with a burst of three; a capacity of eight is a single set
+    private static final int PER_MINUTE = 60;
+    private static final int BURST = 3;
+    private static final long START = 1_000_000L;
+    
+    @Test
+    void idleKeyGetsTheBurstThenWaitsForTheRefill() {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        
+        for (int i = 0; i < BURST; i++) {
+            assertThat(table.tryAcquire("10.0.0.1", START)).isZero();
+        }
+        assertThat(table.tryAcquire("10.0.0.1", START)).isEqualTo(1000);
+        assertThat(table.tryAcquire("10.0.0.1", START + 400)).isEqualTo(600);
+        
+        assertThat(table.tryAcquire("10.0.0.1", START + 1000)).isZero();
+        assertThat(table.tryAcquire("10.0.0.1", START + 1000)).isEqualTo(1000);
+    }
+    
+    @Test
+    void bucketRefillsOnlyUpToTheBurst() {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        
+        table.tryAcquire("10.0.0.1", START);
+        long later = START + 60_000;
+        for (int i = 0; i < BURST; i++) {
+            assertThat(table.tryAcquire("10.0.0.1", later)).isZero();
+        }
+        assertThat(table.tryAcquire("10.0.0.1", later)).isEqualTo(1000);
+    }
+    
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        
+        for (int i = 0; i < BURST; i++) {
+            table.tryAcquire("10.0.0.1", START);
+        }
+        
+        assertThat(table.tryAcquire("10.0.0.1", START)).isPositive();
+        assertThat(table.tryAcquire("10.0.0.2", START)).isZero();
+        assertThat(table.size()).isEqualTo(2);
+    }
+    
+    @Test
+    void fullSetEvictsTheBucketClosestToFull() {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        assertThat(table.capacity()).isEqualTo(8);
+        
+        // Seven keys two permits down and one key only one permit down
+        for (int i = 0; i < 7; i++) {
+            table.tryAcquire("heavy-" + i, START);
+            table.tryAcquire("heavy-" + i, START);
+        }
+        table.tryAcquire("light", START);
+        assertThat(table.size()).isEqualTo(8);
+        
+        assertThat(table.tryAcquire("newcomer", START)).isZero();
+        assertThat(table.size()).isEqualTo(8);
+        
+        // Every heavy bucket survived with its single remaining permit
+        for (int i = 0; i < 7; i++) {
+            assertThat(table.tryAcquire("heavy-" + i, START)).isZero();
+            assertThat(table.tryAcquire("heavy-" + i, START)).isPositive();
+        }
+        
+        // The light key was the one forgotten, so it starts over with a full bucket
+        for (int i = 0; i < BURST; i++) {
+            assertThat(table.tryAcquire("light", START)).isZero();
+        }
+    }
+    
+    @Test
+    void sweepClearsOnlyRefilledBuckets() {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        table.tryAcquire("refilled", START);
+        for (int i = 0; i < BURST; i++) {
+            table.tryAcquire("drained", START);
+        }
+        
+        assertThat(table.sweep(START + 999)).isZero();
+        assertThat(table.sweep(START + 1500)).isEqualTo(1);
+        assertThat(table.size()).isEqualTo(1);
+        
+        // The drained bucket kept its state: 1.5 s of refill is one permit, not a full burst
+        assertThat(table.tryAcquire("drained", START + 1500)).isZero();
+        assertThat(table.tryAcquire("drained", START + 1500)).isEqualTo(500);
+        
+        assertThat(table.sweep(START + 4000)).isEqualTo(1);
+        assertThat(table.size()).isZero();
+    }
+    
+    @Test
+    void concurrentTakesNeverExceedTheBurst() throws Exception {
+        TokenBucketTable table = new TokenBucketTable(8, PER_MINUTE, BURST, START);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    int granted = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (table.tryAcquire("10.0.0.1", START) == 0) {
+                            granted++;
+                        }
+                    }
+                    return granted;
+                }));
+            }
+            
+            int granted = 0;
+            for (Future<Integer> result : results) {
+                granted += result.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(granted).isEqualTo(BURST);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}